@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pt.ist.vaadinframework.EmbeddedApplication;
+import pt.ist.vaadinframework.annotation.EmbeddedRoute;
+import pt.ist.vaadinframework.fragment.PageHandle;
+
+/**
+ * Page resolution through {@link EmbeddedApplication#getPage(String)} by several request threads, alone and while another
+ * thread keeps swapping the whole route table with {@link EmbeddedApplication#replacePages(Map)}. A tenth of the routes have a
+ * path parameter.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PageRegistryBenchmark {
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Param({ "100", "1000" })
+    public int pages;
+
+    private Map<String, PageHandle> routes;
+
+    private String[] paths;
+
+    @Setup
+    public void setup() {
+        routes = new LinkedHashMap<>();
+        paths = new String[pages];
+        String[] args = new String[0];
+        for (int i = 0; i < pages; i++) {
+            String path;
+            if (i % 10 == 0) {
+                path = "module" + i + "/{id}/view";
+                paths[i] = "module" + i + "/" + i + "/view";
+            } else {
+                path = "module" + (i % 10) + "/page" + i;
+                paths[i] = path;
+            }
+            routes.put(path, new PageHandle(new EmbeddedRoute(path, StubPage.class.getName(), args, false),
+                    StubPage.class.getClassLoader()));
+        }
+        EmbeddedApplication.replacePages(routes);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Class<?> getPage(Cursor cursor) {
+        return EmbeddedApplication.getPage(next(cursor));
+    }
+
+    @Benchmark
+    @Group("reload")
+    @GroupThreads(3)
+    public Class<?> getPageWhileReloading(Cursor cursor) {
+        return EmbeddedApplication.getPage(next(cursor));
+    }
+
+    @Benchmark
+    @Group("reload")
+    @GroupThreads(1)
+    public void reload() {
+        EmbeddedApplication.replacePages(routes);
+    }
+
+    private String next(Cursor cursor) {
+        if (cursor.next == paths.length) {
+            cursor.next = 0;
+        }
+        return paths[cursor.next++];
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.benchmarks;
+
+import java.util.Map;
+
+import pt.ist.vaadinframework.ui.EmbeddedComponentContainer;
+
+import com.vaadin.ui.CssLayout;
+
+/**
+ * Empty page registered by the benchmarks, it is never rendered.
+ */
+@SuppressWarnings("serial")
+public class StubPage extends CssLayout implements EmbeddedComponentContainer {
+    @Override
+    public void setArguments(Map<String, String> arguments) {
+    }
+
+    @Override
+    public boolean isAllowedToOpen(Map<String, String> parameters) {
+        return true;
+    }
+}
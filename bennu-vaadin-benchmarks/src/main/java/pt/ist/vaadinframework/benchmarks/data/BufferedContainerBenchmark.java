@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.benchmarks.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pt.ist.vaadinframework.data.AbstractBufferedContainer;
+
+import com.vaadin.data.Container.Filter;
+import com.vaadin.data.util.filter.SimpleStringFilter;
+
+/**
+ * Whole container operations of an {@link AbstractBufferedContainer} holding {@link StubItem}s: filling it, moving a single
+ * element from the head to the tail by removing and adding it or with {@link AbstractBufferedContainer#moveItem(Object, int)},
+ * sorting, filtering and committing every item. Items are created lazily, so the container is fully materialized in the
+ * setup for the benchmarks that do not fill it themselves.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class BufferedContainerBenchmark {
+    @Param({ "1000", "10000", "100000" })
+    public int size;
+
+    private List<StubBean> beans;
+
+    private StubContainer container;
+
+    private Filter filter;
+
+    private boolean ascending;
+
+    @Setup
+    public void setup() {
+        beans = new ArrayList<StubBean>(size);
+        for (int i = 0; i < size; i++) {
+            beans.add(new StubBean(i));
+        }
+        container = new StubContainer(beans);
+        for (Object itemId : container.getItemIds()) {
+            container.getItem(itemId).getItemProperty(StubBean.NAME);
+        }
+        filter = new SimpleStringFilter(StubBean.NAME, "bean1", true, true);
+    }
+
+    @Benchmark
+    public int addItems() {
+        StubContainer filled = new StubContainer();
+        for (StubBean bean : beans) {
+            filled.addItem(bean);
+        }
+        return filled.size();
+    }
+
+    @Benchmark
+    public int removeAndAddItem() {
+        Object first = container.firstItemId();
+        container.removeItem(first);
+        container.addItem(first);
+        return container.size();
+    }
+
+    @Benchmark
+    public Object moveItem() {
+        Object first = container.firstItemId();
+        container.moveItem(first, container.size() - 1);
+        return container.firstItemId();
+    }
+
+    @Benchmark
+    public Object sort() {
+        ascending = !ascending;
+        container.sort(new Object[] { StubBean.NAME }, new boolean[] { ascending });
+        return container.firstItemId();
+    }
+
+    @Benchmark
+    public int filter() {
+        container.addContainerFilter(filter);
+        int filtered = container.size();
+        container.removeAllContainerFilters();
+        return filtered;
+    }
+
+    @Benchmark
+    public boolean commit() {
+        container.commit();
+        return container.isModified();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.benchmarks.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pt.ist.vaadinframework.benchmarks.data.StubOrdinalItem.StubBeanPropertyId;
+import pt.ist.vaadinframework.data.AbstractBufferedItem;
+
+import com.vaadin.data.Property;
+
+/**
+ * Property lookups and commits of {@link AbstractBufferedItem}s, both for items keyed by name ({@link StubItem}) and for items
+ * laid out like the generated proxies ({@link StubOrdinalItem}). Lookups hit properties already registered in the item, the
+ * creation cost is measured separately by {@link DomainItemBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+@State(Scope.Thread)
+public class BufferedItemBenchmark {
+    private StubItem named;
+
+    private StubOrdinalItem ordinal;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        named = new StubItem(new StubBean(1));
+        ordinal = new StubOrdinalItem(new StubBean(1));
+        for (Object propertyId : new Object[] { StubBean.NAME, StubBean.NUMBER, StubBean.ACTIVE }) {
+            named.getItemProperty(propertyId);
+        }
+        for (Object propertyId : StubOrdinalItem.PROPERTY_IDS) {
+            ordinal.getItemProperty(propertyId);
+        }
+    }
+
+    @Benchmark
+    public Property getItemPropertyByName() {
+        return named.getItemProperty(StubBean.NUMBER);
+    }
+
+    @Benchmark
+    public Property getItemPropertyByOrdinal() {
+        return ordinal.getItemProperty(StubBeanPropertyId.number);
+    }
+
+    @Benchmark
+    public Object commitByName() {
+        named.getItemProperty(StubBean.NUMBER).setValue(next++);
+        named.commit();
+        return named.getValue();
+    }
+
+    @Benchmark
+    public Object commitByOrdinal() {
+        ordinal.getItemProperty(StubBeanPropertyId.number).setValue(next++);
+        ordinal.commit();
+        return ordinal.getValue();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.benchmarks.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import pt.ist.vaadinframework.data.BufferedProperty;
+
+import com.vaadin.data.util.ObjectProperty;
+
+/**
+ * Reads, buffered writes and commits of a single {@link BufferedProperty} over an in memory property. Writes alternate between
+ * two values so every call changes the cache and fires a value change.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+@State(Scope.Thread)
+public class BufferedPropertyBenchmark {
+    private BufferedProperty<String> property;
+
+    private BufferedProperty<String> readThrough;
+
+    private boolean flip;
+
+    @Setup
+    public void setup() {
+        property = new BufferedProperty<String>(new ObjectProperty<String>("initial"));
+        readThrough = new BufferedProperty<String>(new ObjectProperty<String>("initial"));
+        readThrough.setReadThrough(true);
+    }
+
+    @Benchmark
+    public String getValue() {
+        return property.getValue();
+    }
+
+    @Benchmark
+    public String getValueReadThrough() {
+        return readThrough.getValue();
+    }
+
+    @Benchmark
+    public boolean setValue() {
+        property.setValue(next());
+        return property.isModified();
+    }
+
+    @Benchmark
+    public boolean setValueAndCommit() {
+        property.setValue(next());
+        property.commit();
+        return property.isModified();
+    }
+
+    private String next() {
+        flip = !flip;
+        return flip ? "first" : "second";
+    }
+}
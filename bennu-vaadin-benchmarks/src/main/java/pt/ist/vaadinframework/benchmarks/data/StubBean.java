@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.benchmarks.data;
+
+import java.io.Serializable;
+
+/**
+ * Plain bean standing in for a domain object, with the property types usually found in forms and tables.
+ */
+@SuppressWarnings("serial")
+public class StubBean implements Serializable {
+    public static final String NAME = "name";
+
+    public static final String NUMBER = "number";
+
+    public static final String ACTIVE = "active";
+
+    private String name;
+
+    private Integer number;
+
+    private Boolean active;
+
+    public StubBean() {
+    }
+
+    public StubBean(int seed) {
+        this.name = "bean" + Integer.toHexString(seed * 0x9E3779B1);
+        this.number = seed;
+        this.active = seed % 2 == 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getNumber() {
+        return number;
+    }
+
+    public void setNumber(Integer number) {
+        this.number = number;
+    }
+
+    public Boolean getActive() {
+        return active;
+    }
+
+    public void setActive(Boolean active) {
+        this.active = active;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.benchmarks.data;
+
+import java.util.List;
+
+import pt.ist.vaadinframework.data.AbstractBufferedContainer;
+
+/**
+ * Container of {@link StubItem}s with the {@link StubBean} properties registered as container properties.
+ */
+@SuppressWarnings("serial")
+public class StubContainer extends AbstractBufferedContainer<StubBean, Object, StubItem> {
+    public StubContainer(Hint... hints) {
+        super(StubBean.class, hints);
+        registerProperties();
+    }
+
+    public StubContainer(List<StubBean> elements, Hint... hints) {
+        super(elements, StubBean.class, hints);
+        registerProperties();
+    }
+
+    private void registerProperties() {
+        addContainerProperty(StubBean.NAME, String.class, null);
+        addContainerProperty(StubBean.NUMBER, Integer.class, null);
+        addContainerProperty(StubBean.ACTIVE, Boolean.class, null);
+    }
+
+    @Override
+    protected StubItem makeItem(StubBean itemId) {
+        return new StubItem(itemId);
+    }
+
+    @Override
+    protected StubItem makeItem(Class<? extends StubBean> type) {
+        return new StubItem(type);
+    }
+}
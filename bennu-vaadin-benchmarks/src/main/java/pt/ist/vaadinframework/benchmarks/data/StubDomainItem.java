@@ -0,0 +1,70 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.benchmarks.data;
+
+import java.beans.IntrospectionException;
+import java.util.HashMap;
+import java.util.Map;
+
+import pt.ist.vaadinframework.data.BufferedProperty;
+import pt.ist.vaadinframework.data.metamodel.BeanPropertyDescriptor;
+import pt.ist.vaadinframework.data.metamodel.PropertyDescriptor;
+import pt.ist.vaadinframework.data.reflect.DomainItem;
+
+import com.vaadin.data.Property;
+
+/**
+ * {@link DomainItem} over a {@link StubBean}. Domain items look their descriptors up in the
+ * {@link pt.ist.vaadinframework.data.metamodel.MetaModel} of the Fenix Framework domain model, which is not available outside
+ * an application, so this item takes them from a fixed table of {@link BeanPropertyDescriptor}s and builds properties the way
+ * {@link DomainItem} does for scalar slots.
+ */
+@SuppressWarnings("serial")
+public class StubDomainItem extends DomainItem<StubBean> {
+    private static final Map<String, PropertyDescriptor> DESCRIPTORS = new HashMap<String, PropertyDescriptor>();
+
+    static {
+        try {
+            for (String propertyId : new String[] { StubBean.NAME, StubBean.NUMBER, StubBean.ACTIVE }) {
+                DESCRIPTORS.put(propertyId, new BeanPropertyDescriptor(new java.beans.PropertyDescriptor(propertyId,
+                        StubBean.class), false));
+            }
+        } catch (IntrospectionException e) {
+            throw new Error(e);
+        }
+    }
+
+    public StubDomainItem(StubBean value, Hint... hints) {
+        super(value, StubBean.class, hints);
+    }
+
+    @Override
+    protected Property makeProperty(Object propertyId) {
+        PropertyDescriptor descriptor = DESCRIPTORS.get(propertyId);
+        if (descriptor == null) {
+            throw new RuntimeException("could not load property: " + propertyId + " for type: " + getType());
+        }
+        Property property = new BufferedProperty(new DescriptorProperty(descriptor));
+        addItemProperty(propertyId, property);
+        return property;
+    }
+}
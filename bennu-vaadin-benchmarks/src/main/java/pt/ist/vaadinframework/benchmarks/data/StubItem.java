@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.benchmarks.data;
+
+import pt.ist.vaadinframework.data.AbstractBufferedItem;
+import pt.ist.vaadinframework.data.BufferedProperty;
+
+import com.vaadin.data.Property;
+import com.vaadin.data.util.MethodProperty;
+
+/**
+ * Item over a {@link StubBean} keyed by property name, the way hand written items and
+ * {@link pt.ist.vaadinframework.data.reflect.DomainItem}s are. Properties are registered in the item when first made.
+ */
+@SuppressWarnings("serial")
+public class StubItem extends AbstractBufferedItem<Object, StubBean> {
+    public StubItem(StubBean value, Hint... hints) {
+        super(value, StubBean.class, hints);
+    }
+
+    public StubItem(Class<? extends StubBean> type, Hint... hints) {
+        super(type, hints);
+    }
+
+    @Override
+    protected Property makeProperty(Object propertyId) {
+        Property property = new BufferedProperty<Object>(new MethodProperty<Object>(getValue(), (String) propertyId));
+        addItemProperty(propertyId, property);
+        return property;
+    }
+}
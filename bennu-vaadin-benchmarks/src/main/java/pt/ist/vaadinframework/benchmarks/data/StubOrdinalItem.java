@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.benchmarks.data;
+
+import pt.ist.vaadinframework.data.AbstractBufferedItem;
+import pt.ist.vaadinframework.data.BufferedProperty;
+import pt.ist.vaadinframework.data.PropertyId;
+
+import com.vaadin.data.Property;
+import com.vaadin.data.util.MethodProperty;
+
+/**
+ * Item over a {@link StubBean} laid out like the generated proxies: property ids with dense ordinals, array backed storage and a
+ * switch over the ordinal in {@link #makeProperty(PropertyId)}.
+ */
+@SuppressWarnings("serial")
+public class StubOrdinalItem extends AbstractBufferedItem<PropertyId, StubBean> {
+    public static class StubBeanPropertyId extends PropertyId {
+        public StubBeanPropertyId(String piece, int ordinal) {
+            super(piece, ordinal);
+        }
+
+        public final static PropertyId name = new PropertyId(StubBean.NAME, 0);
+
+        public final static PropertyId number = new PropertyId(StubBean.NUMBER, 1);
+
+        public final static PropertyId active = new PropertyId(StubBean.ACTIVE, 2);
+    }
+
+    public static final PropertyId[] PROPERTY_IDS = new PropertyId[] { StubBeanPropertyId.name, StubBeanPropertyId.number,
+            StubBeanPropertyId.active };
+
+    public StubOrdinalItem(StubBean value, Hint... hints) {
+        super(value, StubBean.class, hints);
+    }
+
+    @Override
+    protected int ordinalOf(Object propertyId) {
+        return propertyId instanceof PropertyId ? ((PropertyId) propertyId).ordinalIn(PROPERTY_IDS) : -1;
+    }
+
+    @Override
+    protected int getPropertyCount() {
+        return PROPERTY_IDS.length;
+    }
+
+    @Override
+    protected Property makeProperty(PropertyId propertyId) {
+        switch (ordinalOf(propertyId)) {
+        case 0:
+            return new BufferedProperty<String>(new MethodProperty<String>(getValue(), StubBean.NAME));
+        case 1:
+            return new BufferedProperty<Integer>(new MethodProperty<Integer>(getValue(), StubBean.NUMBER));
+        case 2:
+            return new BufferedProperty<Boolean>(new MethodProperty<Boolean>(getValue(), StubBean.ACTIVE));
+        }
+        return null;
+    }
+}
@@ -35,14 +35,22 @@ import javax.servlet.http.HttpSession;
 import pt.ist.bennu.core.applicationTier.Authenticate.UserView;
 import pt.ist.bennu.core.domain.RoleType;
 import pt.ist.bennu.core.domain.groups.Role;
+import pt.ist.vaadinframework.EmbeddedWindow;
+import pt.ist.vaadinframework.PageCache;
 import pt.ist.vaadinframework.annotation.EmbeddedComponent;
+import pt.ist.vaadinframework.instrumentation.ErrorAggregator;
+import pt.ist.vaadinframework.instrumentation.ErrorStatistics;
+import pt.ist.vaadinframework.instrumentation.PageInstrumentation;
+import pt.ist.vaadinframework.instrumentation.PageStatistics;
 import pt.ist.vaadinframework.ui.EmbeddedComponentContainer;
 
 import com.vaadin.terminal.gwt.server.WebApplicationContext;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.Button.ClickEvent;
 import com.vaadin.ui.Button.ClickListener;
+import com.vaadin.ui.HorizontalLayout;
 import com.vaadin.ui.Label;
+import com.vaadin.ui.Table;
 import com.vaadin.ui.VerticalLayout;
 
 @EmbeddedComponent(path = "sysinfo")
@@ -78,6 +86,105 @@ public class SystemInfoPage extends VerticalLayout implements EmbeddedComponentC
             }
         });
         addComponent(serialize);
+
+        final Table pages = new Table();
+        pages.setWidth(100, UNITS_PERCENTAGE);
+        pages.setPageLength(0);
+        pages.addContainerProperty("path", String.class, null, "path", null, null);
+        pages.addContainerProperty("requests", Long.class, null, "requests", null, null);
+        pages.addContainerProperty("latencyMean", String.class, null, "latency mean (ms)", null, null);
+        pages.addContainerProperty("latencyP95", String.class, null, "latency p95 (ms)", null, null);
+        pages.addContainerProperty("latencyMax", String.class, null, "latency max (ms)", null, null);
+        pages.addContainerProperty("bytesMean", String.class, null, "UIDL bytes mean", null, null);
+        pages.addContainerProperty("bytesP95", Long.class, null, "UIDL bytes p95", null, null);
+        pages.addContainerProperty("paintedMean", String.class, null, "painted mean", null, null);
+        pages.addContainerProperty("paintedMax", Long.class, null, "painted max", null, null);
+        pages.addContainerProperty("treeMean", String.class, null, "components mean", null, null);
+        pages.addContainerProperty("treeMax", Long.class, null, "components max", null, null);
+        fillPageStatistics(pages);
+
+        final Label cache = new Label();
+
+        HorizontalLayout pageControls = new HorizontalLayout();
+        pageControls.setSpacing(true);
+        pageControls.addComponent(new Button("refresh page statistics", new ClickListener() {
+            @Override
+            public void buttonClick(ClickEvent event) {
+                fillPageStatistics(pages);
+                if (getWindow() instanceof EmbeddedWindow) {
+                    PageCache pageCache = ((EmbeddedWindow) getWindow()).getPageCache();
+                    cache.setValue("page cache: " + pageCache.size() + " pages, " + pageCache.getComponentCount()
+                            + " components, " + pageCache.getHits() + " hits, " + pageCache.getMisses() + " misses, "
+                            + pageCache.getEvictions() + " evictions");
+                }
+            }
+        }));
+        pageControls.addComponent(new Button("reset page statistics", new ClickListener() {
+            @Override
+            public void buttonClick(ClickEvent event) {
+                PageInstrumentation.resetAll();
+                fillPageStatistics(pages);
+            }
+        }));
+        addComponent(pageControls);
+        addComponent(cache);
+        addComponent(pages);
+
+        final Table errors = new Table();
+        errors.setWidth(100, UNITS_PERCENTAGE);
+        errors.setPageLength(0);
+        errors.addContainerProperty("fingerprint", String.class, null, "fingerprint", null, null);
+        errors.addContainerProperty("window", Long.class, null, "recent", null, null);
+        errors.addContainerProperty("total", Long.class, null, "total", null, null);
+        errors.addContainerProperty("type", String.class, null, "type", null, null);
+        errors.addContainerProperty("message", String.class, null, "message", null, null);
+        errors.addContainerProperty("lastSeen", String.class, null, "last seen", null, null);
+        fillErrorStatistics(errors);
+
+        HorizontalLayout errorControls = new HorizontalLayout();
+        errorControls.setSpacing(true);
+        errorControls.addComponent(new Button("refresh error statistics", new ClickListener() {
+            @Override
+            public void buttonClick(ClickEvent event) {
+                fillErrorStatistics(errors);
+            }
+        }));
+        errorControls.addComponent(new Button("reset error statistics", new ClickListener() {
+            @Override
+            public void buttonClick(ClickEvent event) {
+                ErrorAggregator.getInstance().reset();
+                fillErrorStatistics(errors);
+            }
+        }));
+        addComponent(errorControls);
+        addComponent(errors);
+    }
+
+    private static void fillErrorStatistics(Table errors) {
+        errors.removeAllItems();
+        for (ErrorStatistics statistics : ErrorAggregator.getInstance().getAllStatistics()) {
+            errors.addItem(new Object[] { statistics.getFingerprint(), statistics.getWindowCount(), statistics.getTotalCount(),
+                    statistics.getType(), statistics.getMessage(),
+                    statistics.getLastSeen() != null ? statistics.getLastSeen().toString("yyyy-MM-dd HH:mm:ss") : null },
+                    statistics.getFingerprint());
+        }
+    }
+
+    private static void fillPageStatistics(Table pages) {
+        pages.removeAllItems();
+        for (PageStatistics statistics : PageInstrumentation.getAllStatistics()) {
+            pages.addItem(
+                    new Object[] { statistics.getPath(), statistics.getRequestCount(), format(statistics.getLatencyMeanMillis()),
+                            format(statistics.getLatencyP95Millis()), format(statistics.getLatencyMaxMillis()),
+                            format(statistics.getUidlBytesMean()), statistics.getUidlBytesP95(),
+                            format(statistics.getPaintedComponentsMean()), statistics.getPaintedComponentsMax(),
+                            format(statistics.getComponentTreeSizeMean()), statistics.getComponentTreeSizeMax() },
+                    statistics.getPath());
+        }
+    }
+
+    private static String format(double value) {
+        return String.format("%.1f", value);
     }
 
     @Override
@@ -26,10 +26,20 @@ package pt.ist.bennu.vaadin;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.regex.PatternSyntaxException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -44,8 +54,11 @@ import pt.ist.fenixWebFramework.servlets.filters.contentRewrite.RequestChecksumF
 import pt.ist.fenixframework.FenixFramework;
 import pt.ist.fenixframework.core.Project;
 import pt.ist.vaadinframework.EmbeddedApplication;
+import pt.ist.vaadinframework.VaadinFrameworkLogger;
 import pt.ist.vaadinframework.annotation.EmbeddedAnnotationProcessor;
 import pt.ist.vaadinframework.annotation.EmbeddedComponent;
+import pt.ist.vaadinframework.annotation.EmbeddedRoute;
+import pt.ist.vaadinframework.fragment.PageHandle;
 import pt.ist.vaadinframework.ui.EmbeddedComponentContainer;
 
 @SuppressWarnings("serial")
@@ -67,52 +80,172 @@ public class EmbeddedApplicationInitializer extends HttpServlet {
         });
     }
 
-    private static final Set<Class<? extends EmbeddedComponentContainer>> embeddedComponentClasses =
-            new HashSet<Class<? extends EmbeddedComponentContainer>>();
+    private static final int SCAN_THREADS = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+
+    /**
+     * Reads the routes of one module. Scans run in parallel and only collect routes, all of them are registered in
+     * {@link EmbeddedApplication} at once afterwards, in module order.
+     */
+    private static abstract class ModuleScan implements Callable<ModuleScan> {
+        protected final String module;
+
+        protected final ClassLoader loader;
+
+        protected final Map<String, PageHandle> routes = new LinkedHashMap<>();
+
+        private long elapsed;
+
+        public ModuleScan(String module, ClassLoader loader) {
+            this.module = module;
+            this.loader = loader;
+        }
+
+        @Override
+        public ModuleScan call() throws Exception {
+            long start = System.nanoTime();
+            try {
+                scan();
+            } finally {
+                elapsed = System.nanoTime() - start;
+            }
+            return this;
+        }
+
+        protected abstract void scan() throws IOException;
+    }
+
+    /**
+     * Reads a route index written by {@link EmbeddedAnnotationProcessor}, no page class is loaded.
+     */
+    private static class IndexScan extends ModuleScan {
+        private final URL index;
+
+        public IndexScan(URL index, ClassLoader loader) {
+            super(index.toString(), loader);
+            this.index = index;
+        }
+
+        @Override
+        protected void scan() throws IOException {
+            try (InputStream stream = index.openStream()) {
+                for (String line : IOUtils.readLines(stream)) {
+                    EmbeddedRoute route = EmbeddedRoute.parse(line);
+                    if (route != null) {
+                        routes.put(route.getPath(), new PageHandle(route, loader));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the annotation log of a module compiled before the route index existed, the paths are only known after loading
+     * each page class.
+     */
+    private static class LogScan extends ModuleScan {
+        private final Set<String> indexedClasses;
+
+        public LogScan(Project project, ClassLoader loader, Set<String> indexedClasses) {
+            super(project.getName(), loader);
+            this.indexedClasses = indexedClasses;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void scan() throws IOException {
+            try (InputStream stream = loader.getResourceAsStream(module + "/" + EmbeddedAnnotationProcessor.LOG_FILENAME)) {
+                if (stream == null) {
+                    return;
+                }
+                for (String classname : IOUtils.readLines(stream)) {
+                    if (classname.isEmpty() || indexedClasses.contains(classname)) {
+                        continue;
+                    }
+                    Class<? extends EmbeddedComponentContainer> type;
+                    try {
+                        type = (Class<? extends EmbeddedComponentContainer>) loader.loadClass(classname);
+                    } catch (ClassNotFoundException e) {
+                        VaadinFrameworkLogger.getLogger().error("Embedded page not found: " + classname, e);
+                        continue;
+                    }
+                    EmbeddedComponent embeddedComponent = type.getAnnotation(EmbeddedComponent.class);
+                    if (embeddedComponent == null) {
+                        continue;
+                    }
+                    PageHandle handle = new PageHandle(type);
+                    for (String path : embeddedComponent.path()) {
+                        routes.put(path, handle);
+                    }
+                }
+            }
+        }
+    }
 
     @Override
     public void init(ServletConfig config) throws ServletException {
         super.init(config);
 
-        loadEmbeddedComponentsFromFile(embeddedComponentClasses);
-        for (Class<? extends EmbeddedComponentContainer> embeddedComponentClass : embeddedComponentClasses) {
-            EmbeddedComponent embeddedComponent = embeddedComponentClass.getAnnotation(EmbeddedComponent.class);
-            if (embeddedComponent == null) {
-                continue;
+        long start = System.nanoTime();
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        ExecutorService executor = Executors.newFixedThreadPool(SCAN_THREADS);
+        try {
+            List<ModuleScan> scans = new ArrayList<>();
+            Enumeration<URL> indexes = loader.getResources(EmbeddedRoute.INDEX_RESOURCE);
+            while (indexes.hasMoreElements()) {
+                scans.add(new IndexScan(indexes.nextElement(), loader));
             }
+            List<ModuleScan> indexed = runScans(executor, scans);
 
-            String[] paths = embeddedComponent.path();
-
-            for (String path : paths) {
-                try {
-                    EmbeddedApplication.addPage(embeddedComponentClass);
-                } catch (PatternSyntaxException e) {
-                    throw new Error("Error interpreting pattern: " + path, e);
+            Set<String> indexedClasses = new HashSet<>();
+            for (ModuleScan scan : indexed) {
+                for (PageHandle handle : scan.routes.values()) {
+                    indexedClasses.add(handle.getClassName());
                 }
             }
+            scans.clear();
+            for (Project project : FenixFramework.getProject().getProjects()) {
+                scans.add(new LogScan(project, loader, indexedClasses));
+            }
+            List<ModuleScan> logged = runScans(executor, scans);
+
+            Map<String, PageHandle> pages = new LinkedHashMap<>();
+            register(indexed, pages);
+            register(logged, pages);
+            EmbeddedApplication.addPages(pages);
+        } catch (IOException e) {
+            throw new ServletException(e);
+        } finally {
+            executor.shutdownNow();
         }
+        VaadinFrameworkLogger.getLogger().info(
+                "Registered embedded pages in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
 
         EmbeddedApplication.registerErrorWindow(new ReporterErrorWindow());
     }
 
-    private void loadEmbeddedComponentsFromFile(final Set<Class<? extends EmbeddedComponentContainer>> embeddedComponentClasses) {
-        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    private static List<ModuleScan> runScans(ExecutorService executor, List<ModuleScan> scans) throws ServletException {
+        List<ModuleScan> results = new ArrayList<>();
         try {
-            for (Project artifact : FenixFramework.getProject().getProjects()) {
-                try (InputStream stream =
-                        loader.getResourceAsStream(artifact.getName() + "/" + EmbeddedAnnotationProcessor.LOG_FILENAME)) {
-                    if (stream != null) {
-                        List<String> classnames = IOUtils.readLines(stream);
-                        for (String classname : classnames) {
-                            Class<? extends EmbeddedComponentContainer> type =
-                                    (Class<? extends EmbeddedComponentContainer>) loader.loadClass(classname);
-                            embeddedComponentClasses.add(type);
-                        }
-                    }
-                }
+            for (Future<ModuleScan> future : executor.invokeAll(scans)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException(e);
+        } catch (ExecutionException e) {
+            throw new ServletException("Error loading embedded pages", e.getCause());
+        }
+        return results;
+    }
+
+    private static void register(List<ModuleScan> scans, Map<String, PageHandle> pages) {
+        for (ModuleScan scan : scans) {
+            pages.putAll(scan.routes);
+            if (!scan.routes.isEmpty()) {
+                VaadinFrameworkLogger.getLogger().info(
+                        "Registered " + scan.routes.size() + " embedded pages from " + scan.module + " in "
+                                + TimeUnit.NANOSECONDS.toMicros(scan.elapsed) + " us");
             }
-        } catch (IOException | ClassNotFoundException e) {
-            e.printStackTrace();
         }
     }
 }
@@ -0,0 +1,40 @@
+/*
+ * @(#)EmailErrorReportTransport.java
+ *
+ * Copyright 2012 Instituto Superior Tecnico
+ * Founding Authors: Pedro Santos
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the Bennu-Vadin Integration Module.
+ *
+ *   The Bennu-Vadin Integration Module is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version 
+ *   3 of the License, or (at your option) any later version.
+ *
+ *   The Bennu-Vadin Module is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with the Bennu-Vadin Module. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.bennu.vaadin.errorHandling;
+
+import java.util.Collections;
+
+import pt.utl.ist.fenix.tools.smtp.EmailSender;
+
+/**
+ * Sends error reports by email to the support address of the virtual host where the error occurred.
+ */
+public class EmailErrorReportTransport implements ErrorReportTransport {
+    @Override
+    public void send(ErrorReport report) throws Exception {
+        EmailSender.send(report.getFromName(), null, null, Collections.singleton(report.getRecipient()), null, null,
+                report.getSubject(), report.getBody());
+    }
+}
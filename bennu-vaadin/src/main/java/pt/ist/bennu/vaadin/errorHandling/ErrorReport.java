@@ -0,0 +1,197 @@
+/*
+ * @(#)ErrorReport.java
+ *
+ * Copyright 2012 Instituto Superior Tecnico
+ * Founding Authors: Pedro Santos
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the Bennu-Vadin Integration Module.
+ *
+ *   The Bennu-Vadin Integration Module is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version 
+ *   3 of the License, or (at your option) any later version.
+ *
+ *   The Bennu-Vadin Module is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with the Bennu-Vadin Module. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.bennu.vaadin.errorHandling;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import pt.ist.vaadinframework.terminal.ThrowableFingerprint;
+
+/**
+ * Error report waiting for delivery in an {@link ErrorReportQueue}. Only the request bound data and the stack trace are
+ * captured when the report is submitted, the text of the report is rendered by the delivery thread. Reports of the same
+ * failure submitted while this one is waiting are merged into it.
+ */
+public class ErrorReport implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String fingerprint;
+
+    private final DateTime timestamp;
+
+    private final String fromName;
+
+    private final String recipient;
+
+    private final String subject;
+
+    private final List<String> comments = new ArrayList<>();
+
+    private transient Throwable error;
+
+    private String trace;
+
+    private transient String body;
+
+    private int occurrences = 1;
+
+    private int suppressed = 0;
+
+    private boolean closed = false;
+
+    public ErrorReport(Throwable error, String comment, String fromName, String recipient) {
+        this.fingerprint = ThrowableFingerprint.of(error);
+        this.timestamp = new DateTime();
+        this.error = error;
+        this.fromName = fromName;
+        this.recipient = recipient;
+        this.subject = "Error: " + error.getLocalizedMessage();
+        if (comment != null && !comment.isEmpty()) {
+            comments.add(comment);
+        }
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public DateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public String getFromName() {
+        return fromName;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public synchronized int getOccurrences() {
+        return occurrences;
+    }
+
+    public synchronized int getSuppressed() {
+        return suppressed;
+    }
+
+    /**
+     * Merges a report of the same failure into this one.
+     * 
+     * @return false if this report is already being delivered, in which case nothing is merged.
+     */
+    synchronized boolean merge(ErrorReport other) {
+        if (closed) {
+            return false;
+        }
+        occurrences += other.occurrences;
+        comments.addAll(other.comments);
+        return true;
+    }
+
+    synchronized void addSuppressed(int count) {
+        suppressed += count;
+    }
+
+    /**
+     * Stops merging, called when the delivery starts.
+     */
+    synchronized void close() {
+        closed = true;
+    }
+
+    /**
+     * Renders the stack trace of the error, called before the report is spooled since the error itself is not serialized.
+     */
+    synchronized void captureTrace() {
+        if (error != null) {
+            trace = renderTrace(error);
+            error = null;
+        }
+    }
+
+    /**
+     * @return the text of the report, rendered once the report stops merging.
+     */
+    public synchronized String getBody() {
+        if (body != null) {
+            return body;
+        }
+        captureTrace();
+        final String rendered = render();
+        if (closed) {
+            body = rendered;
+        }
+        return rendered;
+    }
+
+    private String render() {
+        final StringBuilder builder = new StringBuilder();
+        for (final String comment : comments) {
+            builder.append("User Comment: \n");
+            builder.append(comment);
+            builder.append("\n\n");
+        }
+        if (occurrences > 1 || suppressed > 0) {
+            builder.append("Occurrences: ").append(occurrences);
+            if (suppressed > 0) {
+                builder.append(" (").append(suppressed).append(" earlier reports suppressed by rate limit)");
+            }
+            builder.append("\n\n");
+        }
+        if (trace != null) {
+            builder.append(trace);
+        }
+        builder.append("Fingerprint: ").append(fingerprint).append("\n");
+        return builder.toString();
+    }
+
+    private static String renderTrace(Throwable error) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("Caused by: ");
+        builder.append(error.getClass().getName());
+        builder.append("\n");
+        builder.append("   message: ");
+        builder.append(error.getMessage());
+        builder.append("\n");
+        builder.append("   localized message: ");
+        builder.append(error.getLocalizedMessage());
+        builder.append("\n");
+        builder.append("   stack trace:\n");
+        for (final StackTraceElement stackTraceElement : error.getStackTrace()) {
+            builder.append(stackTraceElement.toString());
+            builder.append("\n");
+        }
+        builder.append("\n\n");
+        return builder.toString();
+    }
+}
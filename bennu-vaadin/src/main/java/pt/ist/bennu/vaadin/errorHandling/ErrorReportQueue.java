@@ -0,0 +1,446 @@
+/*
+ * @(#)ErrorReportQueue.java
+ *
+ * Copyright 2012 Instituto Superior Tecnico
+ * Founding Authors: Pedro Santos
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the Bennu-Vadin Integration Module.
+ *
+ *   The Bennu-Vadin Integration Module is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version 
+ *   3 of the License, or (at your option) any later version.
+ *
+ *   The Bennu-Vadin Module is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with the Bennu-Vadin Module. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.bennu.vaadin.errorHandling;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import pt.ist.vaadinframework.VaadinFrameworkLogger;
+
+/**
+ * Delivers error reports in the background so the request that submits a report never waits for the transport.
+ * 
+ * <ul>
+ * <li>Reports are delivered by a single thread from a bounded queue.</li>
+ * <li>A report of a failure that is already waiting for delivery is merged into the waiting one.</li>
+ * <li>At most {@link #getRateLimit()} reports of the same failure are delivered per {@link #getRateInterval()}, the number of
+ * suppressed reports is added to the next report delivered.</li>
+ * <li>When a spool directory is given, every report is written there by a spooling thread as soon as it is submitted, and
+ * only removed once delivered, so reports still waiting in the queue survive restarts. The stack trace is rendered by that
+ * thread too, the submitting request only queues the report. Reports that fail, or that do not fit in the queue, stay in the
+ * spool and are delivered again by {@link #resubmitSpooled()}, which is called on creation and then every
+ * {@link #getRetryInterval()}.</li>
+ * </ul>
+ */
+public class ErrorReportQueue {
+    public static final int DEFAULT_CAPACITY = 100;
+
+    public static final int DEFAULT_RATE_LIMIT = 5;
+
+    public static final long DEFAULT_RATE_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    public static final long DEFAULT_RETRY_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+
+    private static final String SPOOL_SUFFIX = ".report";
+
+    private static class RateWindow {
+        private long start;
+
+        private int count;
+
+        private int suppressed;
+
+        synchronized boolean acquire(ErrorReport report, int limit, long interval) {
+            final long now = System.currentTimeMillis();
+            if (now - start >= interval) {
+                start = now;
+                count = 0;
+            }
+            if (count < limit) {
+                count++;
+                report.addSuppressed(suppressed);
+                suppressed = 0;
+                return true;
+            }
+            suppressed++;
+            return false;
+        }
+    }
+
+    /**
+     * Renders the trace of a submitted report and writes it to the spool, then queues it for delivery.
+     */
+    private class Spooling implements Runnable {
+        private final ErrorReport report;
+
+        public Spooling(ErrorReport report) {
+            this.report = report;
+        }
+
+        @Override
+        public void run() {
+            executor.execute(new Delivery(report, spool(report)));
+        }
+
+        void reject() {
+            report.close();
+            pending.remove(report.getFingerprint(), report);
+            dropped.incrementAndGet();
+            VaadinFrameworkLogger.getLogger().error("error report spool queue full, dropped report " + report.getFingerprint());
+        }
+    }
+
+    private class Delivery implements Runnable {
+        private final ErrorReport report;
+
+        private final File file;
+
+        public Delivery(ErrorReport report, File file) {
+            this.report = report;
+            this.file = file;
+        }
+
+        @Override
+        public void run() {
+            report.close();
+            pending.remove(report.getFingerprint(), report);
+            try {
+                transport.send(report);
+                sent.incrementAndGet();
+                if (file != null && !file.delete()) {
+                    VaadinFrameworkLogger.getLogger().warn("could not remove delivered error report: " + file);
+                }
+            } catch (Throwable e) {
+                failed.incrementAndGet();
+                VaadinFrameworkLogger.getLogger().error("failed to deliver error report " + report.getFingerprint(), e);
+                if (file != null) {
+                    // keep what was merged into the report since it was spooled
+                    write(report, file);
+                }
+            } finally {
+                if (file != null) {
+                    inFlight.remove(file);
+                }
+            }
+        }
+
+        void reject() {
+            report.close();
+            pending.remove(report.getFingerprint(), report);
+            if (file != null) {
+                write(report, file);
+                inFlight.remove(file);
+            } else {
+                dropped.incrementAndGet();
+                VaadinFrameworkLogger.getLogger().error("error report queue full, dropped report " + report.getFingerprint());
+            }
+        }
+    }
+
+    private final ErrorReportTransport transport;
+
+    private final File spoolDirectory;
+
+    private final int rateLimit;
+
+    private final long rateInterval;
+
+    private final long retryInterval;
+
+    private final ThreadPoolExecutor executor;
+
+    private final ThreadPoolExecutor spooler;
+
+    private final ScheduledExecutorService retries;
+
+    private final ConcurrentMap<String, ErrorReport> pending = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, RateWindow> rates = new ConcurrentHashMap<>();
+
+    private final Set<File> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+    private final AtomicLong submitted = new AtomicLong();
+
+    private final AtomicLong merged = new AtomicLong();
+
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    private final AtomicLong sent = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    public ErrorReportQueue(ErrorReportTransport transport, File spoolDirectory) {
+        this(transport, spoolDirectory, DEFAULT_CAPACITY, DEFAULT_RATE_LIMIT, DEFAULT_RATE_INTERVAL);
+    }
+
+    /**
+     * @param spoolDirectory
+     *            where reports are kept until delivered, or null to keep them only in memory.
+     * @param capacity
+     *            the maximum number of reports waiting for delivery.
+     * @param rateLimit
+     *            the maximum number of reports of the same failure delivered per interval.
+     * @param rateInterval
+     *            the rate limit interval in milliseconds.
+     */
+    public ErrorReportQueue(ErrorReportTransport transport, File spoolDirectory, int capacity, int rateLimit, long rateInterval) {
+        this(transport, spoolDirectory, capacity, rateLimit, rateInterval, DEFAULT_RETRY_INTERVAL);
+    }
+
+    /**
+     * @param spoolDirectory
+     *            where reports are kept until delivered, or null to keep them only in memory.
+     * @param capacity
+     *            the maximum number of reports waiting for delivery.
+     * @param rateLimit
+     *            the maximum number of reports of the same failure delivered per interval.
+     * @param rateInterval
+     *            the rate limit interval in milliseconds.
+     * @param retryInterval
+     *            the interval in milliseconds between deliveries of the spooled reports, or 0 to only deliver them on
+     *            creation and when {@link #resubmitSpooled()} is called.
+     */
+    public ErrorReportQueue(ErrorReportTransport transport, File spoolDirectory, int capacity, int rateLimit,
+            long rateInterval, long retryInterval) {
+        this.transport = transport;
+        this.spoolDirectory = spoolDirectory;
+        this.rateLimit = rateLimit;
+        this.rateInterval = rateInterval;
+        this.retryInterval = retryInterval;
+        final ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "error-report-delivery-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        this.executor =
+                new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(capacity), threadFactory,
+                        new RejectedExecutionHandler() {
+                            @Override
+                            public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                                ((Delivery) runnable).reject();
+                            }
+                        });
+        this.spooler =
+                new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(capacity), threadFactory,
+                        new RejectedExecutionHandler() {
+                            @Override
+                            public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                                ((Spooling) runnable).reject();
+                            }
+                        });
+        if (spoolDirectory != null) {
+            if (!spoolDirectory.isDirectory() && !spoolDirectory.mkdirs()) {
+                VaadinFrameworkLogger.getLogger().error("could not create error report spool: " + spoolDirectory);
+            }
+            resubmitSpooled();
+        }
+        if (spoolDirectory != null && retryInterval > 0) {
+            retries = Executors.newSingleThreadScheduledExecutor(threadFactory);
+            retries.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        resubmitSpooled();
+                    } catch (Throwable e) {
+                        VaadinFrameworkLogger.getLogger().error("failed to resubmit spooled error reports", e);
+                    }
+                }
+            }, retryInterval, retryInterval, TimeUnit.MILLISECONDS);
+        } else {
+            retries = null;
+        }
+    }
+
+    /**
+     * Queues a report for delivery, returning immediately.
+     * 
+     * @return true if the report was queued, false if it was merged into a waiting report or suppressed by the rate limit.
+     */
+    public boolean submit(ErrorReport report) {
+        submitted.incrementAndGet();
+        final String fingerprint = report.getFingerprint();
+        ErrorReport waiting = pending.get(fingerprint);
+        if (waiting != null && waiting.merge(report)) {
+            merged.incrementAndGet();
+            return false;
+        }
+        RateWindow window = rates.get(fingerprint);
+        if (window == null) {
+            final RateWindow created = new RateWindow();
+            window = rates.putIfAbsent(fingerprint, created);
+            if (window == null) {
+                window = created;
+            }
+        }
+        if (!window.acquire(report, rateLimit, rateInterval)) {
+            rateLimited.incrementAndGet();
+            return false;
+        }
+        pending.put(fingerprint, report);
+        if (spoolDirectory != null) {
+            spooler.execute(new Spooling(report));
+        } else {
+            executor.execute(new Delivery(report, null));
+        }
+        return true;
+    }
+
+    /**
+     * Queues the reports left in the spool by failed deliveries or by a previous run.
+     * 
+     * @return the number of reports queued.
+     */
+    public int resubmitSpooled() {
+        if (spoolDirectory == null) {
+            return 0;
+        }
+        final File[] files = spoolDirectory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        Arrays.sort(files);
+        int count = 0;
+        for (final File file : files) {
+            if (file.getName().endsWith(SPOOL_SUFFIX) && inFlight.add(file)) {
+                final ErrorReport report = read(file);
+                if (report != null && !executor.isShutdown()) {
+                    executor.execute(new Delivery(report, file));
+                    count++;
+                } else {
+                    inFlight.remove(file);
+                }
+            }
+        }
+        return count;
+    }
+
+    private File spool(ErrorReport report) {
+        if (spoolDirectory == null) {
+            return null;
+        }
+        final File file =
+                new File(spoolDirectory, report.getTimestamp().getMillis() + "-" + report.getFingerprint() + "-"
+                        + System.identityHashCode(report) + SPOOL_SUFFIX);
+        inFlight.add(file);
+        if (write(report, file)) {
+            return file;
+        }
+        file.delete();
+        inFlight.remove(file);
+        return null;
+    }
+
+    private static boolean write(ErrorReport report, File file) {
+        report.captureTrace();
+        try (ObjectOutputStream stream = new ObjectOutputStream(new FileOutputStream(file))) {
+            synchronized (report) {
+                stream.writeObject(report);
+            }
+            return true;
+        } catch (final IOException e) {
+            VaadinFrameworkLogger.getLogger().error("could not spool error report " + report.getFingerprint(), e);
+            return false;
+        }
+    }
+
+    private ErrorReport read(File file) {
+        try (ObjectInputStream stream = new ObjectInputStream(new FileInputStream(file))) {
+            final ErrorReport report = (ErrorReport) stream.readObject();
+            report.close();
+            return report;
+        } catch (final IOException | ClassNotFoundException | ClassCastException e) {
+            VaadinFrameworkLogger.getLogger().error("discarding unreadable error report: " + file, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Stops accepting reports, the ones still queued are delivered in the background, the ones still being spooled stay in
+     * the spool for the next run.
+     */
+    public void shutdown() {
+        if (retries != null) {
+            retries.shutdown();
+        }
+        spooler.shutdown();
+        executor.shutdown();
+    }
+
+    public int getRateLimit() {
+        return rateLimit;
+    }
+
+    public long getRateInterval() {
+        return rateInterval;
+    }
+
+    public long getRetryInterval() {
+        return retryInterval;
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getMergedCount() {
+        return merged.get();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
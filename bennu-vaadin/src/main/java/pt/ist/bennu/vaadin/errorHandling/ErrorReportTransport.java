@@ -0,0 +1,36 @@
+/*
+ * @(#)ErrorReportTransport.java
+ *
+ * Copyright 2012 Instituto Superior Tecnico
+ * Founding Authors: Pedro Santos
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the Bennu-Vadin Integration Module.
+ *
+ *   The Bennu-Vadin Integration Module is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version 
+ *   3 of the License, or (at your option) any later version.
+ *
+ *   The Bennu-Vadin Module is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with the Bennu-Vadin Module. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.bennu.vaadin.errorHandling;
+
+/**
+ * Delivers error reports, called from the delivery thread of an {@link ErrorReportQueue}.
+ */
+public interface ErrorReportTransport {
+    /**
+     * @throws Exception
+     *             if the report was not delivered, it is kept in the spool and retried later.
+     */
+    public void send(ErrorReport report) throws Exception;
+}
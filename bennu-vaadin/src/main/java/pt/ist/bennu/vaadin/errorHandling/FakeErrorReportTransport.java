@@ -0,0 +1,77 @@
+/*
+ * @(#)FakeErrorReportTransport.java
+ *
+ * Copyright 2012 Instituto Superior Tecnico
+ * Founding Authors: Pedro Santos
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the Bennu-Vadin Integration Module.
+ *
+ *   The Bennu-Vadin Integration Module is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version 
+ *   3 of the License, or (at your option) any later version.
+ *
+ *   The Bennu-Vadin Module is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with the Bennu-Vadin Module. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.bennu.vaadin.errorHandling;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transport that keeps the reports in memory instead of sending them, for tests and development environments without a mail
+ * relay. It can be set to fail to exercise the spool.
+ */
+public class FakeErrorReportTransport implements ErrorReportTransport {
+    private final List<ErrorReport> reports = new ArrayList<>();
+
+    private boolean failing = false;
+
+    @Override
+    public synchronized void send(ErrorReport report) throws Exception {
+        if (failing) {
+            throw new IllegalStateException("fake transport failure");
+        }
+        report.getBody();
+        reports.add(report);
+        notifyAll();
+    }
+
+    public synchronized void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    public synchronized List<ErrorReport> getReports() {
+        return new ArrayList<>(reports);
+    }
+
+    public synchronized void clear() {
+        reports.clear();
+    }
+
+    /**
+     * Waits until the given number of reports were delivered.
+     * 
+     * @return false if the timeout expired first.
+     */
+    public synchronized boolean await(int count, long timeoutMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (reports.size() < count) {
+            final long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+}
@@ -24,16 +24,14 @@
  */
 package pt.ist.bennu.vaadin.errorHandling;
 
-import java.util.Collections;
+import java.io.File;
 
 import pt.ist.bennu.core.applicationTier.Authenticate.UserView;
 import pt.ist.bennu.core.domain.User;
 import pt.ist.bennu.core.domain.VirtualHost;
-import pt.ist.vaadinframework.VaadinFrameworkLogger;
 import pt.ist.vaadinframework.VaadinResourceConstants;
 import pt.ist.vaadinframework.VaadinResources;
 import pt.ist.vaadinframework.terminal.SystemErrorWindow;
-import pt.utl.ist.fenix.tools.smtp.EmailSender;
 
 import com.vaadin.event.ShortcutAction.KeyCode;
 import com.vaadin.terminal.Sizeable;
@@ -54,6 +52,15 @@ import com.vaadin.ui.Window;
  * 
  */
 public class ReporterErrorWindow extends SystemErrorWindow implements VaadinResourceConstants {
+    /**
+     * System property with the directory where undelivered error reports are kept. It must not be shared with other
+     * applications, since every queue delivers all the reports it finds in its spool. Without it reports are only kept in
+     * memory.
+     */
+    public static final String SPOOL_DIRECTORY_PROPERTY = "bennu.vaadin.errorReports.spool";
+
+    private static volatile ErrorReportQueue reportQueue;
+
     Throwable systemError;
 
     // private final TextField email;
@@ -125,38 +132,41 @@ public class ReporterErrorWindow extends SystemErrorWindow implements VaadinReso
         final VirtualHost virtualHost = VirtualHost.getVirtualHostForThread();
         final String supportEmailAddress = virtualHost.getSupportEmailAddress();
 
-        final String subject = "Error: " + systemError.getLocalizedMessage();
-
-        final StringBuilder builder = new StringBuilder();
-        builder.append("User Comment: \n");
-        builder.append(comment.getValue());
-        builder.append("\n\n");
-
-        fillErrorInfo(builder);
+        getReportQueue().submit(new ErrorReport(systemError, (String) comment.getValue(), fromName, supportEmailAddress));
+    }
 
-        try {
-            EmailSender.send(fromName, null, null, Collections.singleton(supportEmailAddress), null, null, subject,
-                    builder.toString());
-        } catch (Throwable e) {
-            VaadinFrameworkLogger.getLogger().error("failed to report the exception by email");
+    /**
+     * @return the queue reports are submitted to, by default it sends them by email and spools them in the directory given by
+     *         the {@link #SPOOL_DIRECTORY_PROPERTY} system property, if set.
+     */
+    public static ErrorReportQueue getReportQueue() {
+        ErrorReportQueue queue = reportQueue;
+        if (queue == null) {
+            synchronized (ReporterErrorWindow.class) {
+                queue = reportQueue;
+                if (queue == null) {
+                    final String spoolDirectory = System.getProperty(SPOOL_DIRECTORY_PROPERTY);
+                    final File spool = spoolDirectory != null ? new File(spoolDirectory) : null;
+                    queue = new ErrorReportQueue(new EmailErrorReportTransport(), spool);
+                    reportQueue = queue;
+                }
+            }
         }
+        return queue;
     }
 
-    private void fillErrorInfo(final StringBuilder builder) {
-        builder.append("Caused by: ");
-        builder.append(systemError.getClass().getName());
-        builder.append("\n");
-        builder.append("   message: ");
-        builder.append(systemError.getMessage());
-        builder.append("\n");
-        builder.append("   localized message: ");
-        builder.append(systemError.getLocalizedMessage());
-        builder.append("\n");
-        builder.append("   stack trace:\n");
-        for (final StackTraceElement stackTraceElement : systemError.getStackTrace()) {
-            builder.append(stackTraceElement.toString());
-            builder.append("\n");
+    /**
+     * Replaces the report queue, for instance with one using a {@link FakeErrorReportTransport}. The previous queue delivers
+     * the reports it still holds and stops.
+     */
+    public static void setReportQueue(ErrorReportQueue queue) {
+        final ErrorReportQueue previous;
+        synchronized (ReporterErrorWindow.class) {
+            previous = reportQueue;
+            reportQueue = queue;
+        }
+        if (previous != null && previous != queue) {
+            previous.shutdown();
         }
-        builder.append("\n\n");
     }
 }
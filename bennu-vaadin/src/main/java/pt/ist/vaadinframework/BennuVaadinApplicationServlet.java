@@ -3,15 +3,46 @@ package pt.ist.vaadinframework;
 import java.io.BufferedWriter;
 import java.io.IOException;
 
+import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import pt.ist.vaadinframework.instrumentation.ByteCountingResponse;
+import pt.ist.vaadinframework.instrumentation.InstrumentedCommunicationManager;
+import pt.ist.vaadinframework.instrumentation.PageInstrumentation;
+import pt.ist.vaadinframework.instrumentation.PageInstrumentation.Sample;
+
+import com.vaadin.Application;
 import com.vaadin.terminal.gwt.server.ApplicationServlet;
+import com.vaadin.terminal.gwt.server.CommunicationManager;
 
 public class BennuVaadinApplicationServlet extends ApplicationServlet {
+    private static final String UIDL_PATH = "/UIDL";
+
     @Override
     protected void writeAjaxPageHtmlHeader(BufferedWriter page, String title, String themeUri, HttpServletRequest request)
             throws IOException {
         page.write("<link href='http://fonts.googleapis.com/css?family=Lato' rel='stylesheet' type='text/css'>");
         super.writeAjaxPageHtmlHeader(page, title, themeUri, request);
     }
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (!PageInstrumentation.isEnabled() || request.getPathInfo() == null || !request.getPathInfo().startsWith(UIDL_PATH)) {
+            super.service(request, response);
+            return;
+        }
+        Sample sample = PageInstrumentation.begin();
+        ByteCountingResponse counting = new ByteCountingResponse(response);
+        try {
+            super.service(request, counting);
+        } finally {
+            PageInstrumentation.end(sample, counting.getCount());
+        }
+    }
+
+    @Override
+    public CommunicationManager createCommunicationManager(Application application) {
+        return new InstrumentedCommunicationManager(application);
+    }
 }
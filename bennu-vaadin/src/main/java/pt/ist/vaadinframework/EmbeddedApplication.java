@@ -23,11 +23,12 @@ package pt.ist.vaadinframework;
 
 import java.lang.reflect.Field;
 import java.net.SocketException;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.SortedSet;
-import java.util.regex.Pattern;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
 import org.apache.commons.lang.StringUtils;
@@ -41,16 +42,22 @@ import pt.ist.bennu.vaadin.domain.contents.VaadinNode;
 import pt.ist.fenixWebFramework.servlets.filters.SetUserViewFilter;
 import pt.ist.vaadinframework.annotation.EmbeddedComponentUtils;
 import pt.ist.vaadinframework.fragment.FragmentQuery;
+import pt.ist.vaadinframework.fragment.FragmentRouter;
+import pt.ist.vaadinframework.fragment.FragmentRouter.Match;
+import pt.ist.vaadinframework.fragment.PageHandle;
+import pt.ist.vaadinframework.instrumentation.ErrorAggregator;
+import pt.ist.vaadinframework.instrumentation.PageInstrumentation;
+import pt.ist.vaadinframework.instrumentation.PageInstrumentation.Sample;
+import pt.ist.vaadinframework.instrumentation.PageInstrumentation.TreeSizeSampling;
 import pt.ist.vaadinframework.terminal.DefaultSystemErrorWindow;
 import pt.ist.vaadinframework.terminal.DomainExceptionErrorMessage;
 import pt.ist.vaadinframework.terminal.SystemErrorWindow;
+import pt.ist.vaadinframework.terminal.ThrowableAnalysis;
 import pt.ist.vaadinframework.ui.EmbeddedComponentContainer;
 import pt.utl.ist.fenix.tools.util.i18n.Language;
 
 import com.vaadin.Application;
 import com.vaadin.data.Buffered;
-import com.vaadin.data.Buffered.SourceException;
-import com.vaadin.data.Validator.InvalidValueException;
 import com.vaadin.service.ApplicationContext.TransactionListener;
 import com.vaadin.terminal.gwt.server.WebApplicationContext;
 import com.vaadin.ui.AbstractField;
@@ -133,9 +140,20 @@ import com.vaadin.ui.Window;
  */
 @SuppressWarnings("serial")
 public class EmbeddedApplication extends Application implements VaadinResourceConstants {
-    private static final Map<String, Class<? extends EmbeddedComponentContainer>> pages = new HashMap<>();
+    private static final Object routerLock = new Object();
 
-    private static SystemErrorWindow errorWindow = new DefaultSystemErrorWindow();
+    private static volatile FragmentRouter router = new FragmentRouter();
+
+    private static volatile SystemErrorWindow errorWindow = new DefaultSystemErrorWindow();
+
+    /**
+     * {@link Form} has no setter for its buffered source error, the field is looked up once.
+     */
+    private static final Field FORM_ERROR_FIELD = getFormErrorField();
+
+    private static final String WINDOW_NAME_PARAMETER = "windowName";
+
+    private final TreeSizeSampling treeSizeSampling = new TreeSizeSampling();
 
     @Override
     public void init() {
@@ -147,6 +165,10 @@ public class EmbeddedApplication extends Application implements VaadinResourceCo
 
             @Override
             public void transactionEnd(Application application, Object transactionData) {
+                Sample sample = PageInstrumentation.current();
+                if (sample != null && transactionData instanceof HttpServletRequest) {
+                    describe(sample, (HttpServletRequest) transactionData);
+                }
                 application.setLocale(null);
             }
         });
@@ -154,6 +176,23 @@ public class EmbeddedApplication extends Application implements VaadinResourceCo
         setMainWindow(new EmbeddedWindow());
     }
 
+    private void describe(Sample sample, HttpServletRequest request) {
+        String windowName = request.getParameter(WINDOW_NAME_PARAMETER);
+        Window window = windowName != null ? super.getWindow(windowName) : null;
+        if (window == null) {
+            window = getMainWindow();
+        }
+        if (window instanceof EmbeddedWindow) {
+            sample.setPath(((EmbeddedWindow) window).getCurrentRoute());
+        }
+        if (window != null) {
+            Object page = window instanceof EmbeddedWindow ? ((EmbeddedWindow) window).getCurrentPage() : window;
+            if (PageInstrumentation.shouldCountComponents(treeSizeSampling, page)) {
+                sample.setTreeSize(PageInstrumentation.countComponents(window));
+            }
+        }
+    }
+
     public static void open(Application application, Class<? extends EmbeddedComponentContainer> clazz, String... args) {
         ((EmbeddedApplication) application).open(clazz, args);
     }
@@ -225,31 +264,85 @@ public class EmbeddedApplication extends Application implements VaadinResourceCo
     }
 
     /**
-     * Adds a new pattern to the resolver, the pattern can have groups that when
-     * captured will be supplied to the corresponding {@link EmbeddedComponentContainer} using
-     * {@link EmbeddedComponentContainer#setArguments(String...)}.
+     * Adds the paths of the page {@link pt.ist.vaadinframework.annotation.EmbeddedComponent} annotation to the router. Path
+     * segments of the form <code>{name}</code> match any value, which is supplied to the corresponding
+     * {@link EmbeddedComponentContainer} along with the query parameters using
+     * {@link EmbeddedComponentContainer#setArguments(java.util.Map)}.
      * 
-     * @param pattern
-     *            The compiled {@link Pattern} instance.
-     * @param type
-     *            The container that will be instantiated if the pattern matches
-     *            the {@link EmbeddedApplication#VAADIN_PARAM}.
+     * @param page
+     *            The container that will be instantiated if its path matches the fragment.
      */
     public static void addPage(Class<? extends EmbeddedComponentContainer> page) {
-        pages.put(EmbeddedComponentUtils.getAnnotationPath(EmbeddedComponentUtils.getAnnotation(page)), page);
+        final PageHandle handle = new PageHandle(page);
+        final Map<String, PageHandle> pages = new LinkedHashMap<>();
+        for (final String path : EmbeddedComponentUtils.getAnnotation(page).path()) {
+            pages.put(path, handle);
+        }
+        addPages(pages);
+    }
+
+    /**
+     * Adds a page to the router without loading its class, the class is only loaded when the path is first navigated to.
+     * 
+     * @param path
+     *            The path as written in the {@link pt.ist.vaadinframework.annotation.EmbeddedComponent} annotation.
+     * @param page
+     *            The handle of the container that will be instantiated if its path matches the fragment.
+     */
+    public static void addPage(String path, PageHandle page) {
+        addPages(Collections.singletonMap(path, page));
+    }
+
+    /**
+     * Adds several pages at once. The routes are copied into a new router that replaces the current one when complete, so
+     * requests being served never see a partially updated route table and never block on registrations.
+     */
+    public static void addPages(Map<String, PageHandle> pages) {
+        synchronized (routerLock) {
+            final Map<String, PageHandle> routes = new LinkedHashMap<>(router.getRoutes());
+            routes.putAll(pages);
+            router = new FragmentRouter(routes);
+        }
+    }
+
+    /**
+     * Atomically replaces all the registered pages, for instance when a module is reloaded. Navigations resolve either against
+     * the previous pages or against the new ones, never against a mix of both.
+     */
+    public static void replacePages(Map<String, PageHandle> pages) {
+        final FragmentRouter replacement = new FragmentRouter(pages);
+        synchronized (routerLock) {
+            router = replacement;
+        }
+    }
+
+    /**
+     * @return a snapshot of the registered pages by path.
+     */
+    public static Map<String, PageHandle> getPages() {
+        return router.getRoutes();
     }
 
     public static Class<? extends EmbeddedComponentContainer> getPage(String path) {
+        final Match match = route(path);
+        return match != null ? match.getPage() : null;
+    }
+
+    /**
+     * Resolves a fragment path to its page and the values of the path parameters, an empty path resolves to the landing page
+     * of the current virtual host.
+     */
+    public static Match route(String path) {
+        final FragmentRouter current = router;
         if (path == null || StringUtils.isEmpty(path)) {
-            final VirtualHost virtualHost = VirtualHost.getVirtualHostForThread();
-            final SortedSet<Node> nodes = virtualHost.getOrderedTopLevelNodes();
+            final SortedSet<Node> nodes = VirtualHost.getVirtualHostForThread().getOrderedTopLevelNodes();
             for (final Node node : nodes) {
                 if (node.isAccessible() && node instanceof VaadinNode) {
-                    return pages.get(((VaadinNode) node).getArgument());
+                    return current.match(((VaadinNode) node).getArgument());
                 }
             }
         }
-        return pages.get(path);
+        return current.match(path);
     }
 
     public static SystemMessages getSystemMessages() {
@@ -330,50 +423,33 @@ public class EmbeddedApplication extends Application implements VaadinResourceCo
             return;
         }
 
-        if (findInvalidValueException(t) != null) {
+        final ThrowableAnalysis analysis = ThrowableAnalysis.ofFirstCauses(t);
+        if (analysis.getInvalidValueException() != null) {
             // validation errors are handled by their fields
             return;
         }
 
-        DomainException de = findDomainExceptionCause(t);
-        Buffered source = findSource(t);
+        DomainException de = analysis.getDomainException();
+        Buffered source = analysis.getSource();
         if (de != null && source != null) {
             setErrorsOn(source, de);
         } else {
             setErrorsOn(source, null);
-            VaadinFrameworkLogger.getLogger().error("Uncaught Error", t);
+            ErrorAggregator.getInstance().logError("Uncaught Error", t);
             errorWindow.showError(getMainWindow(), t);
         }
     }
 
-    private Buffered findSource(Throwable t) {
-        if (t instanceof SourceException) {
-            return ((SourceException) t).getSource();
-        }
-        if (t.getCause() != null) {
-            return findSource(t.getCause());
-        }
-        return null;
-    }
-
-    private DomainException findDomainExceptionCause(Throwable t) {
-        if (t instanceof DomainException) {
-            return (DomainException) t;
-        }
-        if (t.getCause() != null) {
-            return findDomainExceptionCause(t.getCause());
-        }
-        return null;
-    }
-
-    private InvalidValueException findInvalidValueException(Throwable t) {
-        if (t instanceof InvalidValueException) {
-            return (InvalidValueException) t;
-        }
-        if (t.getCause() != null) {
-            return findInvalidValueException(t.getCause());
+    private static Field getFormErrorField() {
+        try {
+            Field field = Form.class.getDeclaredField("currentBufferedSourceException");
+            field.setAccessible(true);
+            return field;
+        } catch (SecurityException e) {
+            return null;
+        } catch (NoSuchFieldException e) {
+            return null;
         }
-        return null;
     }
 
     private static void setErrorsOn(Buffered source, DomainException message) {
@@ -384,14 +460,12 @@ public class EmbeddedApplication extends Application implements VaadinResourceCo
         if (source != null) {
             if (source instanceof Form) {
                 Form form = (Form) source;
-                try {
-                    Field formError = Form.class.getDeclaredField("currentBufferedSourceException");
-                    formError.setAccessible(true);
-                    formError.set(form, se);
-                } catch (IllegalArgumentException e) {
-                } catch (IllegalAccessException e) {
-                } catch (SecurityException e) {
-                } catch (NoSuchFieldException e) {
+                if (FORM_ERROR_FIELD != null) {
+                    try {
+                        FORM_ERROR_FIELD.set(form, se);
+                    } catch (IllegalArgumentException e) {
+                    } catch (IllegalAccessException e) {
+                    }
                 }
                 for (Object propertyId : form.getItemPropertyIds()) {
                     ((AbstractField) form.getField(propertyId)).setCurrentBufferedSourceException(null);
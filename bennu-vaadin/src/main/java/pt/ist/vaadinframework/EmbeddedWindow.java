@@ -21,16 +21,17 @@
  */
 package pt.ist.vaadinframework;
 
-import java.util.EmptyStackException;
+import java.io.Serializable;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Map;
-import java.util.Stack;
 
 import org.apache.commons.lang.StringUtils;
 
-import pt.ist.vaadinframework.annotation.EmbeddedComponentUtils;
 import pt.ist.vaadinframework.fragment.FragmentQuery;
+import pt.ist.vaadinframework.fragment.FragmentRouter.Match;
 import pt.ist.vaadinframework.ui.EmbeddedComponentContainer;
+import pt.ist.vaadinframework.ui.RestorableComponentContainer;
 
 import com.vaadin.ui.UriFragmentUtility;
 import com.vaadin.ui.UriFragmentUtility.FragmentChangedEvent;
@@ -44,25 +45,109 @@ import com.vaadin.ui.Window;
 public class EmbeddedWindow extends Window {
     final UriFragmentUtility fragmentUtility = new UriFragmentUtility();
 
-    private final Stack<String> history = new Stack<>();
+    public static final int DEFAULT_HISTORY_DEPTH = 50;
 
-    private final Map<String, EmbeddedComponentContainer> pageCache = new HashMap<>();
+    private static class HistoryEntry implements Serializable {
+        private final String fragment;
+
+        private Map<String, String> viewState;
+
+        public HistoryEntry(String fragment) {
+            this.fragment = fragment;
+        }
+
+        @Override
+        public String toString() {
+            return fragment;
+        }
+    }
+
+    private final LinkedList<HistoryEntry> history = new LinkedList<>();
+
+    private HistoryEntry restoring;
+
+    private EmbeddedComponentContainer currentPage;
+
+    private int historyDepth = DEFAULT_HISTORY_DEPTH;
+
+    private final PageCache pageCache = new PageCache();
+
+    private String currentPath;
+
+    private String currentRoute;
 
     public void open(String fragment) {
         fragmentUtility.setFragment(fragment);
     }
 
     public void back() {
-        try {
-            history.pop(); // consume current
-            fragmentUtility.setFragment(history.pop());
-        } catch (EmptyStackException e) {
-            // back fails quietly if no history is available
+        // back fails quietly if no history is available
+        if (history.size() > 1) {
+            history.removeLast(); // consume current
+            restoring = history.removeLast();
+            fragmentUtility.setFragment(restoring.fragment);
+        } else {
+            history.clear();
         }
     }
 
     public void refresh() {
-        loadFragment(history.peek(), false);
+        if (!history.isEmpty()) {
+            loadFragment(history.peekLast().fragment, false);
+        }
+    }
+
+    public PageCache getPageCache() {
+        return pageCache;
+    }
+
+    /**
+     * Limits the persistent pages kept by this window, least recently used pages are dropped first.
+     * 
+     * @param maxPages
+     *            maximum number of cached pages, 0 disables caching.
+     * @param maxComponents
+     *            maximum number of components in all cached pages together.
+     */
+    public void setPageCacheLimits(int maxPages, int maxComponents) {
+        pageCache.setLimits(maxPages, maxComponents);
+    }
+
+    public int getHistoryDepth() {
+        return historyDepth;
+    }
+
+    /**
+     * @param historyDepth
+     *            maximum number of fragments remembered for {@link #back()}, the oldest are forgotten first.
+     */
+    public void setHistoryDepth(int historyDepth) {
+        this.historyDepth = historyDepth;
+        trimHistory();
+    }
+
+    private void trimHistory() {
+        while (history.size() > historyDepth) {
+            history.removeFirst();
+        }
+    }
+
+    /**
+     * @return the path of the page currently shown, without parameters.
+     */
+    public String getCurrentPath() {
+        return currentPath;
+    }
+
+    EmbeddedComponentContainer getCurrentPage() {
+        return currentPage;
+    }
+
+    /**
+     * @return the route of the page currently shown, with its parameter segments unbound.
+     */
+    public String getCurrentRoute() {
+        return currentRoute;
     }
 
     public FragmentQuery getFragment() {
@@ -85,23 +170,36 @@ public class EmbeddedWindow extends Window {
 
     private void loadFragment(String fragment, boolean logHistory) {
         FragmentQuery query = new FragmentQuery("#" + fragment);
+        String cacheKey = query.getNormalizedQueryString();
 
-        EmbeddedComponentContainer page = null;
-        if (pageCache.containsKey(fragment)) {
-            page = pageCache.get(fragment);
-        } else {
+        HistoryEntry restored = restoring;
+        restoring = null;
+
+        EmbeddedComponentContainer page = pageCache.get(cacheKey);
+        Match match = null;
+        if (page == null) {
             try {
-                Class<? extends EmbeddedComponentContainer> requestedType = EmbeddedApplication.getPage(query.getPath());
-                if (requestedType == null) {
+                match = EmbeddedApplication.route(query.getPath());
+                if (match == null) {
                     showNotification("Página não encontrada", "A página pedida não foi encontrada no servidor",
                             Notification.TYPE_ERROR_MESSAGE);
                     VaadinFrameworkLogger.getLogger().info("O fragmento: " + fragment + " não foi encontrado");
                 } else {
+                    Class<? extends EmbeddedComponentContainer> requestedType = match.getPage();
+                    Map<String, String> params = query.getParams();
+                    if (!match.getPathParameters().isEmpty()) {
+                        params = new HashMap<>(params);
+                        params.putAll(match.getPathParameters());
+                    }
                     EmbeddedComponentContainer container = requestedType.newInstance();
-                    if (container.isAllowedToOpen(query.getParams())) {
-                        container.setArguments(query.getParams());
-                        if (EmbeddedComponentUtils.getAnnotation(requestedType).persistent()) {
-                            pageCache.put(fragment, container);
+                    if (container.isAllowedToOpen(params)) {
+                        container.setArguments(params);
+                        if (restored != null && restored.viewState != null
+                                && container instanceof RestorableComponentContainer) {
+                            ((RestorableComponentContainer) container).setViewState(restored.viewState);
+                        }
+                        if (match.getHandle().isPersistent()) {
+                            pageCache.put(cacheKey, container);
                         }
                         page = container;
                     } else {
@@ -117,11 +215,24 @@ public class EmbeddedWindow extends Window {
             }
         }
         if (page != null) {
+            if (logHistory && restored == null && currentPage instanceof RestorableComponentContainer && !history.isEmpty()) {
+                history.peekLast().viewState = ((RestorableComponentContainer) currentPage).getViewState();
+            }
+            if (currentPage != null && currentPage != page) {
+                pageCache.swappedOut(currentPage);
+            }
             getContent().removeAllComponents();
             getContent().addComponent(fragmentUtility);
             getContent().addComponent(page);
+            currentPage = page;
+            currentPath = query.getPath();
+            if (match == null) {
+                match = EmbeddedApplication.route(query.getPath());
+            }
+            currentRoute = match != null ? match.getRoute() : null;
             if (logHistory) {
-                history.push(fragment);
+                history.addLast(new HistoryEntry(fragment));
+                trimHistory();
                 VaadinFrameworkLogger.getLogger().info("history: " + StringUtils.join(history, " > "));
             }
         }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import pt.ist.vaadinframework.instrumentation.PageInstrumentation;
+import pt.ist.vaadinframework.ui.EmbeddedComponentContainer;
+
+/**
+ * Least recently used cache of the persistent pages of an {@link EmbeddedWindow}. Pages are evicted when there are more than
+ * {@link #getMaxPages()} of them or when their combined component trees exceed {@link #getMaxComponents()}. A page is measured
+ * when it is cached, usually before it is attached and builds its user interface, and measured again each time the window
+ * swaps it out, see {@link #swappedOut(EmbeddedComponentContainer)}.
+ */
+public class PageCache implements Serializable {
+    public static final int DEFAULT_MAX_PAGES = 10;
+
+    public static final int DEFAULT_MAX_COMPONENTS = 5000;
+
+    private static class CachedPage implements Serializable {
+        private final EmbeddedComponentContainer page;
+
+        private int size;
+
+        public CachedPage(EmbeddedComponentContainer page, int size) {
+            this.page = page;
+            this.size = size;
+        }
+    }
+
+    private final LinkedHashMap<String, CachedPage> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int maxPages;
+
+    private int maxComponents;
+
+    private int components = 0;
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    private long evictions = 0;
+
+    public PageCache() {
+        this(DEFAULT_MAX_PAGES, DEFAULT_MAX_COMPONENTS);
+    }
+
+    public PageCache(int maxPages, int maxComponents) {
+        this.maxPages = maxPages;
+        this.maxComponents = maxComponents;
+    }
+
+    public EmbeddedComponentContainer get(String key) {
+        CachedPage entry = pages.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.page;
+    }
+
+    public void put(String key, EmbeddedComponentContainer page) {
+        CachedPage entry = new CachedPage(page, PageInstrumentation.countComponents(page));
+        CachedPage previous = pages.put(key, entry);
+        if (previous != null) {
+            components -= previous.size;
+        }
+        components += entry.size;
+        evict();
+    }
+
+    /**
+     * Measures again a cached page that stopped being shown, when its component tree is complete, and evicts pages if the
+     * cache got over its limits. Pages that are not cached are ignored.
+     */
+    public void swappedOut(EmbeddedComponentContainer page) {
+        for (CachedPage entry : pages.values()) {
+            if (entry.page == page) {
+                int size = PageInstrumentation.countComponents(page);
+                components += size - entry.size;
+                entry.size = size;
+                evict();
+                return;
+            }
+        }
+    }
+
+    public void clear() {
+        pages.clear();
+        components = 0;
+    }
+
+    /**
+     * @param maxPages
+     *            maximum number of cached pages, 0 disables caching.
+     * @param maxComponents
+     *            maximum number of components in all the cached pages together.
+     */
+    public void setLimits(int maxPages, int maxComponents) {
+        this.maxPages = maxPages;
+        this.maxComponents = maxComponents;
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, CachedPage>> iterator = pages.entrySet().iterator();
+        while (iterator.hasNext() && (pages.size() > maxPages || components > maxComponents)) {
+            components -= iterator.next().getValue().size;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    public int getMaxComponents() {
+        return maxComponents;
+    }
+
+    public int size() {
+        return pages.size();
+    }
+
+    public int getComponentCount() {
+        return components;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+}
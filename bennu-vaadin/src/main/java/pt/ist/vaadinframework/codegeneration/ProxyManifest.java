@@ -0,0 +1,185 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.codegeneration;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Record of the inputs of the last proxy generation, kept next to the generated sources. It holds a hash of all the inputs, to
+ * skip generation altogether when nothing changed, a hash of the inputs of each domain class, to regenerate only the proxies of
+ * the classes that changed, and the generated files, to detect deleted outputs.
+ */
+public class ProxyManifest {
+    public static final String FILENAME = ".vaadin-proxies.manifest";
+
+    private static final String INPUTS_KEY = "inputs";
+
+    private static final String OUTPUTS_KEY = "outputs";
+
+    private static final String CLASS_PREFIX = "class.";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File file;
+
+    private String inputsHash;
+
+    private final Map<String, String> classHashes = new HashMap<String, String>();
+
+    private final Set<String> outputs = new TreeSet<String>();
+
+    private ProxyManifest(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the manifest stored in the given file, or an empty one if the file does not exist or can't be read.
+     */
+    public static ProxyManifest load(File file) {
+        ProxyManifest manifest = new ProxyManifest(file);
+        if (file.exists()) {
+            Properties properties = new Properties();
+            try (InputStream stream = new FileInputStream(file)) {
+                properties.load(stream);
+            } catch (IOException e) {
+                return manifest;
+            }
+            manifest.inputsHash = properties.getProperty(INPUTS_KEY);
+            String outputs = properties.getProperty(OUTPUTS_KEY);
+            if (!StringUtils.isEmpty(outputs)) {
+                for (String output : outputs.split(",")) {
+                    manifest.outputs.add(output);
+                }
+            }
+            for (String key : properties.stringPropertyNames()) {
+                if (key.startsWith(CLASS_PREFIX)) {
+                    manifest.classHashes.put(key.substring(CLASS_PREFIX.length()), properties.getProperty(key));
+                }
+            }
+        }
+        return manifest;
+    }
+
+    public void store() throws IOException {
+        Properties properties = new Properties();
+        if (inputsHash != null) {
+            properties.setProperty(INPUTS_KEY, inputsHash);
+        }
+        properties.setProperty(OUTPUTS_KEY, StringUtils.join(outputs, ","));
+        for (Entry<String, String> entry : classHashes.entrySet()) {
+            properties.setProperty(CLASS_PREFIX + entry.getKey(), entry.getValue());
+        }
+        try (OutputStream stream = new FileOutputStream(file)) {
+            properties.store(stream, "Vaadin proxies generation manifest, do not edit");
+        }
+    }
+
+    /**
+     * @return true if the inputs are the same as in the last generation and all the files generated then still exist.
+     */
+    public boolean isUpToDate(String inputsHash, File outputDir) {
+        if (this.inputsHash == null || !this.inputsHash.equals(inputsHash) || outputs.isEmpty()) {
+            return false;
+        }
+        for (String output : outputs) {
+            if (!new File(outputDir, output).exists()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the classes whose hash differs from the one recorded in the last generation.
+     */
+    public Set<String> getChangedClasses(Map<String, String> hashes) {
+        Set<String> changed = new HashSet<String>();
+        for (Entry<String, String> entry : hashes.entrySet()) {
+            if (!entry.getValue().equals(classHashes.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    public void update(String inputsHash, Map<String, String> hashes, Collection<String> outputs) {
+        this.inputsHash = inputsHash;
+        this.classHashes.clear();
+        this.classHashes.putAll(hashes);
+        this.outputs.clear();
+        this.outputs.addAll(outputs);
+    }
+
+    /**
+     * @return the hexadecimal SHA-1 of the contents of the given files, in order.
+     */
+    public static String hashFiles(Collection<File> files) throws IOException {
+        MessageDigest digest = newDigest();
+        for (File input : files) {
+            digest.update(input.getPath().getBytes(UTF8));
+            digest.update(FileUtils.readFileToByteArray(input));
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return the hexadecimal SHA-1 of the given text.
+     */
+    public static String hash(String text) {
+        return toHex(newDigest().digest(text.getBytes(UTF8)));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new Error(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+}
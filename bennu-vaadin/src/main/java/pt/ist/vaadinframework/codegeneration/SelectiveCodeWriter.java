@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can 
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General 
+ *   Public License as published by the Free Software Foundation, either version 
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.codegeneration;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Set;
+
+import org.apache.commons.io.output.NullOutputStream;
+
+import com.sun.codemodel.CodeWriter;
+import com.sun.codemodel.JPackage;
+import com.sun.codemodel.writer.FilterCodeWriter;
+
+/**
+ * Writes only the sources in the given set, identified by their path relative to the output directory (see
+ * {@link #getPath(String, String)}), the others are discarded.
+ */
+public class SelectiveCodeWriter extends FilterCodeWriter {
+    private final Set<String> selected;
+
+    public SelectiveCodeWriter(CodeWriter core, Set<String> selected) {
+        super(core);
+        this.selected = selected;
+    }
+
+    @Override
+    public Writer openSource(JPackage pkg, String fileName) throws IOException {
+        if (!selected.contains(getPath(pkg.name(), fileName))) {
+            return new OutputStreamWriter(new NullOutputStream());
+        }
+        return super.openSource(pkg, fileName);
+    }
+
+    public static String getPath(String packageName, String fileName) {
+        return packageName.replace('.', '/') + "/" + fileName;
+    }
+}
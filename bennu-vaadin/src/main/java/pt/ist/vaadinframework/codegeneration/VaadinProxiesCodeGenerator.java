@@ -24,12 +24,24 @@ package pt.ist.vaadinframework.codegeneration;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
@@ -49,8 +61,11 @@ import pt.ist.vaadinframework.data.BufferedProperty;
 import pt.ist.vaadinframework.data.HintedProperty.Hint;
 import pt.ist.vaadinframework.data.PropertyId;
 import pt.ist.vaadinframework.data.hints.Required;
+import pt.ist.vaadinframework.data.util.RelationDelta;
 
 import com.sun.codemodel.CodeWriter;
+import com.sun.codemodel.JArray;
+import com.sun.codemodel.JCase;
 import com.sun.codemodel.JClass;
 import com.sun.codemodel.JClassAlreadyExistsException;
 import com.sun.codemodel.JCodeModel;
@@ -61,6 +76,8 @@ import com.sun.codemodel.JFieldVar;
 import com.sun.codemodel.JInvocation;
 import com.sun.codemodel.JMethod;
 import com.sun.codemodel.JMod;
+import com.sun.codemodel.JOp;
+import com.sun.codemodel.JSwitch;
 import com.sun.codemodel.JType;
 import com.sun.codemodel.JTypeVar;
 import com.sun.codemodel.JVar;
@@ -75,6 +92,12 @@ import com.vaadin.data.util.AbstractProperty;
  * @author Sérgio Silva (sergio.silva@ist.utl.pt)
  */
 public class VaadinProxiesCodeGenerator {
+    /**
+     * Part of the hash of every class, to be incremented whenever the generated code changes so that all proxies are
+     * regenerated.
+     */
+    public static final int GENERATOR_VERSION = 3;
+
     private final DomainModel model;
 
     private final File srcBaseDir;
@@ -85,7 +108,7 @@ public class VaadinProxiesCodeGenerator {
 
     private final Map<JDefinedClass, JDefinedClass> propertyIdMap = new HashMap<JDefinedClass, JDefinedClass>();
 
-    private final Map<JCodeModel, Map<String, JClass>> refMap = new HashMap<JCodeModel, Map<String, JClass>>();
+    private final ConcurrentMap<JCodeModel, Map<String, JClass>> refMap = new ConcurrentHashMap<JCodeModel, Map<String, JClass>>();
 
     private final Map<DomainEntity, JDefinedClass> containerBaseMap = new HashMap<DomainEntity, JDefinedClass>();
 
@@ -93,6 +116,14 @@ public class VaadinProxiesCodeGenerator {
 
     private static final Map<String, File> packageMapper = new HashMap<String, File>();
 
+    private final Set<String> outputs = new TreeSet<String>();
+
+    private int generatedCount = 0;
+
+    private int skippedCount = 0;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
     public VaadinProxiesCodeGenerator(DomainModel model, File srcBaseDir, String vaadinSrcDir, File packageSourceLocations) {
         this.model = model;
         this.srcBaseDir = srcBaseDir;
@@ -112,25 +143,67 @@ public class VaadinProxiesCodeGenerator {
     }
 
     public void generate() throws IOException, JClassAlreadyExistsException {
-        JCodeModel srcgen = new JCodeModel();
+        generate(null);
+    }
+
+    /**
+     * Generates the proxies of the whole model but only writes the base proxies of the given classes, or of every class if
+     * null. Base proxies that are missing from the output directory are always written.
+     * 
+     * @param changedClasses
+     *            full names of the domain classes whose base proxies are written.
+     */
+    public void generate(Set<String> changedClasses) throws IOException, JClassAlreadyExistsException {
+        // base proxies are partitioned by package, classes of different packages always import each other so the output
+        // does not depend on the partitioning
+        Map<String, JCodeModel> srcgens = new TreeMap<String, JCodeModel>();
         Map<File, JCodeModel> localsrcs = new HashMap<File, JCodeModel>();
         for (DomainClass clazz : model.getDomainClasses()) {
-            registerClass(clazz, srcgen, localsrcs);
+            String packageName = clazz.getPackageName() + ".data";
+            if (!srcgens.containsKey(packageName)) {
+                srcgens.put(packageName, new JCodeModel());
+            }
+            registerClass(clazz, srcgens.get(packageName), localsrcs);
         }
         for (DomainClass clazz : model.getDomainClasses()) {
             if (clazz.hasSuperclass()) {
                 registerHierarchy(clazz, clazz.getSuperclass());
             }
         }
-        for (Entry<DomainEntity, JDefinedClass> entry : itemBaseMap.entrySet()) {
-            DomainEntity clazz = entry.getKey();
-            JDefinedClass proxy = entry.getValue();
-            fillBaseItem(proxy, getHostType(proxy, clazz), clazz);
+
+        // items only modify their own classes, so each code model can be filled independently
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final List<Entry<DomainEntity, JDefinedClass>> entries : groupByOwner(itemBaseMap).values()) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws JClassAlreadyExistsException {
+                    for (Entry<DomainEntity, JDefinedClass> entry : entries) {
+                        DomainEntity clazz = entry.getKey();
+                        JDefinedClass proxy = entry.getValue();
+                        fillBaseItem(proxy, getHostType(proxy, clazz), clazz);
+                    }
+                    return null;
+                }
+            });
         }
-        for (Entry<DomainEntity, JDefinedClass> entry : itemMap.entrySet()) {
-            JDefinedClass proxy = entry.getValue();
-            fillItem(proxy, getHostType(proxy, entry.getKey()));
+        run(tasks);
+        tasks.clear();
+        for (final List<Entry<DomainEntity, JDefinedClass>> entries : groupByOwner(itemMap).values()) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (Entry<DomainEntity, JDefinedClass> entry : entries) {
+                        JDefinedClass proxy = entry.getValue();
+                        fillItem(proxy, getHostType(proxy, entry.getKey()));
+                    }
+                    return null;
+                }
+            });
         }
+        run(tasks);
+        tasks.clear();
+
+        // base containers get maker clauses added to the containers of their super classes, which may be in other packages
         iterateThroughContainers(new HashSet<DomainEntity>(containerBaseMap.keySet()), (DomainClass) containerBaseMap.keySet()
                 .iterator().next());
         for (Entry<DomainEntity, JDefinedClass> entry : containerMap.entrySet()) {
@@ -138,16 +211,215 @@ public class VaadinProxiesCodeGenerator {
             JDefinedClass proxy = entry.getValue();
             fillContainer(proxy, (DomainClass) clazz);
         }
-        CodeWriter src = new FileCodeWriter(srcBaseDir, true);
-        CodeWriter res = new FileCodeWriter(srcBaseDir, true);
-        srcgen.build(src, res);
 
-        for (File packageDir : localsrcs.keySet()) {
-            packageDir.mkdirs();
-            src = new NonOverridingCodeWriter(new FileCodeWriter(packageDir), packageDir);
-            res = new NonOverridingCodeWriter(new FileCodeWriter(packageDir), packageDir);
-            localsrcs.get(packageDir).build(src, res);
+        final Set<String> selected = new HashSet<String>();
+        outputs.clear();
+        generatedCount = 0;
+        skippedCount = 0;
+        for (DomainClass clazz : model.getDomainClasses()) {
+            List<String> classOutputs = getBaseOutputs(clazz);
+            outputs.addAll(classOutputs);
+            if (changedClasses == null || changedClasses.contains(clazz.getFullName()) || !exist(classOutputs)) {
+                selected.addAll(classOutputs);
+                generatedCount++;
+            } else {
+                skippedCount++;
+            }
+        }
+        for (final JCodeModel srcgen : srcgens.values()) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    CodeWriter src = new SelectiveCodeWriter(new FileCodeWriter(srcBaseDir, true), selected);
+                    CodeWriter res = new FileCodeWriter(srcBaseDir, true);
+                    srcgen.build(src, res);
+                    return null;
+                }
+            });
         }
+        for (final Entry<File, JCodeModel> localsrc : localsrcs.entrySet()) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    File packageDir = localsrc.getKey();
+                    packageDir.mkdirs();
+                    CodeWriter src = new NonOverridingCodeWriter(new FileCodeWriter(packageDir), packageDir);
+                    CodeWriter res = new NonOverridingCodeWriter(new FileCodeWriter(packageDir), packageDir);
+                    localsrc.getValue().build(src, res);
+                    return null;
+                }
+            });
+        }
+        run(tasks);
+    }
+
+    /**
+     * Number of threads used to fill and write the code models, 1 runs every step on the calling thread.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    private static Map<JCodeModel, List<Entry<DomainEntity, JDefinedClass>>> groupByOwner(Map<DomainEntity, JDefinedClass> proxies) {
+        Map<JCodeModel, List<Entry<DomainEntity, JDefinedClass>>> groups =
+                new LinkedHashMap<JCodeModel, List<Entry<DomainEntity, JDefinedClass>>>();
+        for (Entry<DomainEntity, JDefinedClass> entry : proxies.entrySet()) {
+            JCodeModel owner = entry.getValue().owner();
+            if (!groups.containsKey(owner)) {
+                groups.put(owner, new ArrayList<Entry<DomainEntity, JDefinedClass>>());
+            }
+            groups.get(owner).add(entry);
+        }
+        return groups;
+    }
+
+    private void run(List<Callable<Void>> tasks) throws IOException, JClassAlreadyExistsException {
+        if (parallelism == 1 || tasks.size() < 2) {
+            for (Callable<Void> task : tasks) {
+                try {
+                    task.call();
+                } catch (Exception e) {
+                    rethrow(e);
+                }
+            }
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            rethrow(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void rethrow(Throwable e) throws IOException, JClassAlreadyExistsException {
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        if (e instanceof JClassAlreadyExistsException) {
+            throw (JClassAlreadyExistsException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new IOException(e);
+    }
+
+    /**
+     * @return the number of domain classes whose base proxies were written by the last generation.
+     */
+    public int getGeneratedCount() {
+        return generatedCount;
+    }
+
+    /**
+     * @return the number of domain classes whose base proxies were left untouched by the last generation.
+     */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * @return the base proxy files of the last generation, relative to the source base directory.
+     */
+    public Set<String> getOutputs() {
+        return Collections.unmodifiableSet(outputs);
+    }
+
+    /**
+     * Hashes, for each domain class, everything its base proxies are generated from: its slots and roles, the types and
+     * proxy names of its roles, its super classes with their slots and roles in order, since they come first in the property
+     * ordinals, and its subclasses, which the base container creates items for.
+     * 
+     * @return the hash of each domain class by full name.
+     */
+    public Map<String, String> computeInputHashes() {
+        Map<DomainEntity, List<DomainClass>> descendants = new HashMap<DomainEntity, List<DomainClass>>();
+        for (DomainClass clazz : model.getDomainClasses()) {
+            DomainEntity current = clazz;
+            while (current instanceof DomainClass && ((DomainClass) current).hasSuperclass()) {
+                current = ((DomainClass) current).getSuperclass();
+                if (!descendants.containsKey(current)) {
+                    descendants.put(current, new ArrayList<DomainClass>());
+                }
+                descendants.get(current).add(clazz);
+            }
+        }
+        Map<String, String> hashes = new HashMap<String, String>();
+        for (DomainClass clazz : model.getDomainClasses()) {
+            StringBuilder input = new StringBuilder();
+            input.append(GENERATOR_VERSION).append('\n');
+            describeEntity(input, clazz);
+            describeProperties(input, clazz);
+            DomainEntity current = clazz;
+            while (current instanceof DomainClass && ((DomainClass) current).hasSuperclass()) {
+                current = ((DomainClass) current).getSuperclass();
+                input.append("extends ");
+                describeEntity(input, current);
+                if (current instanceof DomainClass) {
+                    describeProperties(input, (DomainClass) current);
+                }
+            }
+            if (descendants.containsKey(clazz)) {
+                Set<String> names = new TreeSet<String>();
+                for (DomainClass descendant : descendants.get(clazz)) {
+                    names.add(descendant.getFullName() + " " + getItemSuffix(descendant));
+                }
+                for (String name : names) {
+                    input.append("subclass ").append(name).append('\n');
+                }
+            }
+            hashes.put(clazz.getFullName(), ProxyManifest.hash(input.toString()));
+        }
+        return hashes;
+    }
+
+    private void describeProperties(StringBuilder input, DomainClass clazz) {
+        for (Slot slot : clazz.getSlotsList()) {
+            input.append("slot ").append(slot.getName()).append(' ').append(slot.getSlotType().getFullname()).append(' ')
+                    .append(new TreeSet<Option>(slot.getOptions())).append('\n');
+        }
+        for (Role role : clazz.getRoleSlotsList()) {
+            input.append("role ").append(role.getName()).append(' ').append(role.getMultiplicityLower()).append(' ')
+                    .append(role.getMultiplicityUpper()).append(' ');
+            describeEntity(input, role.getType());
+        }
+    }
+
+    private void describeEntity(StringBuilder input, DomainEntity entity) {
+        input.append(entity.getFullName()).append(' ').append(getItemSuffix(entity)).append(' ')
+                .append(getContainerSuffix(entity)).append('\n');
+    }
+
+    private List<String> getBaseOutputs(DomainClass clazz) {
+        List<String> result = new ArrayList<String>();
+        String packageName = clazz.getPackageName() + ".data";
+        result.add(SelectiveCodeWriter.getPath(packageName, clazz.getName() + getItemSuffix(clazz) + ".java"));
+        result.add(SelectiveCodeWriter.getPath(packageName, clazz.getName() + getContainerSuffix(clazz) + ".java"));
+        return result;
+    }
+
+    private boolean exist(List<String> files) {
+        for (String file : files) {
+            if (!new File(srcBaseDir, file).exists()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private void iterateThroughContainers(Set<DomainEntity> entities, DomainClass clazz) {
@@ -232,16 +504,22 @@ public class VaadinProxiesCodeGenerator {
         generateConstructorForInstance(item, itemType);
         generateConstructorForInstanceWithForcedType(item, itemType);
 
+        List<String> propertyNames = getPropertyNames((DomainClass) clazz);
+        int ordinal = propertyNames.size() - getOwnPropertyCount((DomainClass) clazz);
         Map<String, JDefinedClass> propertyClasses = new HashMap<String, JDefinedClass>();
+        Map<String, Integer> ordinals = new HashMap<String, Integer>();
         for (Slot slot : ((DomainClass) clazz).getSlotsList()) {
-            generateSlotPropertyId(propertyIdMap.get(item), slot.getName());
+            ordinals.put(slot.getName(), ordinal);
+            generateSlotPropertyId(propertyIdMap.get(item), slot.getName(), ordinal++);
             propertyClasses.put(slot.getName(),
                     generateSingleValueProperty(itemType, item, slot.getName(), getSlotType(item.owner(), clazz, slot)));
             generateDirectPropertyGetter(item, slot);
         }
         for (Role role : ((DomainClass) clazz).getRoleSlotsList()) {
             if (role.getName() != null && !role.getType().getName().startsWith("Remote")) {
-                generateRolePropertyId(propertyIdMap.get(item), role.getName(), propertyIdMap.get(getBaseItem(role.getType())));
+                ordinals.put(role.getName(), ordinal);
+                generateRolePropertyId(propertyIdMap.get(item), role.getName(), propertyIdMap.get(getBaseItem(role.getType())),
+                        ordinal++);
                 if (role.getMultiplicityUpper() == 1) {
                     propertyClasses.put(role.getName(),
                             generateSingleValueProperty(itemType, item, role.getName(), ref(item.owner(), role.getType())));
@@ -253,7 +531,39 @@ public class VaadinProxiesCodeGenerator {
                 }
             }
         }
-        generateMakePropertyMethod(item, (DomainClass) clazz, propertyClasses);
+        generatePropertyOrdinals(item, propertyNames);
+        generateMakePropertyMethod(item, (DomainClass) clazz, propertyClasses, ordinals);
+    }
+
+    /**
+     * The names of the properties of a class, inherited ones first, in ordinal order.
+     */
+    private static List<String> getPropertyNames(DomainClass clazz) {
+        List<String> names;
+        if (clazz.hasSuperclass()) {
+            names = getPropertyNames((DomainClass) clazz.getSuperclass());
+        } else {
+            names = new ArrayList<String>();
+        }
+        for (Slot slot : clazz.getSlotsList()) {
+            names.add(slot.getName());
+        }
+        for (Role role : clazz.getRoleSlotsList()) {
+            if (role.getName() != null && !role.getType().getName().startsWith("Remote")) {
+                names.add(role.getName());
+            }
+        }
+        return names;
+    }
+
+    private static int getOwnPropertyCount(DomainClass clazz) {
+        int count = clazz.getSlotsList().size();
+        for (Role role : clazz.getRoleSlotsList()) {
+            if (role.getName() != null && !role.getType().getName().startsWith("Remote")) {
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
@@ -335,6 +645,7 @@ public class VaadinProxiesCodeGenerator {
 
         // generateConstructor(propertyId);
         generateConstructorWithPiece(propertyId);
+        generateConstructorWithPieceAndOrdinal(propertyId);
 
         return propertyId;
     }
@@ -405,8 +716,7 @@ public class VaadinProxiesCodeGenerator {
      *     _Override
      *     public void setValue(Object newValue) throws ReadOnlyException, ConversionException {
      *         Set<_propertytype_> set = _parent_Item_Base.this.getValue().get_property_Set();
-     *         set.clear();
-     *         set.addAll((Set<_propertyType>) newValue);
+     *         RelationDelta.write("_parent_._property_", set, (Collection<?>) newValue);
      *     }
      *     
      *     _Override
@@ -440,8 +750,9 @@ public class VaadinProxiesCodeGenerator {
         JVar set =
                 setValue.body().decl(setOfType, "set",
                         item.staticRef("this").invoke("getValue").invoke("get" + StringUtils.capitalize(property) + "Set"));
-        setValue.body().add(set.invoke("clear"));
-        setValue.body().add(set.invoke("addAll").arg(JExpr.cast(setOfType, newValue)));
+        setValue.body().add(
+                item.owner().ref(RelationDelta.class).staticInvoke("write").arg(JExpr.lit(parent.name() + "." + property))
+                        .arg(set).arg(JExpr.cast(item.owner().ref(Collection.class).narrow(item.owner().wildcard()), newValue)));
 
         // getType()
         JMethod getType =
@@ -466,6 +777,20 @@ public class VaadinProxiesCodeGenerator {
         constructor.body().invoke("super").arg(piece);
     }
 
+    /**
+     * <code>
+     * public _type_(String piece, int ordinal) {
+     *     super(piece, ordinal);
+     * }
+     * </code>
+     */
+    private void generateConstructorWithPieceAndOrdinal(JDefinedClass type) {
+        JMethod constructor = type.constructor(JMod.PUBLIC);
+        final JVar piece = constructor.param(String.class, "piece");
+        final JVar ordinal = constructor.param(int.class, "ordinal");
+        constructor.body().invoke("super").arg(piece).arg(ordinal);
+    }
+
     /**
      * <code>
      * public _proxy_(Property wrapped, Hint... hints) {
@@ -556,58 +881,100 @@ public class VaadinProxiesCodeGenerator {
 
     /**
      * <code>
-     * public final static PropertyId type = new PropertyId("_slot_");
+     * public final static PropertyId type = new PropertyId("_slot_", _ordinal_);
      * </code>
      */
-    private JFieldVar generateSlotPropertyId(JDefinedClass propertyIdClass, String slot) {
+    private JFieldVar generateSlotPropertyId(JDefinedClass propertyIdClass, String slot, int ordinal) {
         JClass propertyId = propertyIdClass.owner().ref(PropertyId.class);
-        return propertyIdClass.field(JMod.PUBLIC | JMod.FINAL | JMod.STATIC, propertyId, slot, JExpr._new(propertyId).arg(slot));
+        return propertyIdClass.field(JMod.PUBLIC | JMod.FINAL | JMod.STATIC, propertyId, slot,
+                JExpr._new(propertyId).arg(slot).arg(JExpr.lit(ordinal)));
     }
 
     /**
      * <code>
      * public final static _rolePropertyIdType_ _role_() {
-     *     return new _rolePropertyIdType_("_role_");
+     *     return new _rolePropertyIdType_("_role_", _ordinal_);
      * }
      * 
      * public final static _rolePropertyIdType_ _role_ = _role_();
      * </code>
      */
-    private JFieldVar generateRolePropertyId(JDefinedClass propertyIdClass, String role, JType rolePropertyIdType) {
+    private JFieldVar generateRolePropertyId(JDefinedClass propertyIdClass, String role, JType rolePropertyIdType, int ordinal) {
         JMethod getter = propertyIdClass.method(JMod.PUBLIC | JMod.FINAL | JMod.STATIC, rolePropertyIdType, role);
-        getter.body()._return(JExpr._new(rolePropertyIdType).arg(role));
+        getter.body()._return(JExpr._new(rolePropertyIdType).arg(role).arg(JExpr.lit(ordinal)));
 
         return propertyIdClass.field(JMod.PUBLIC | JMod.FINAL | JMod.STATIC, rolePropertyIdType, role, JExpr.invoke(getter));
     }
 
+    /**
+     * <code>
+     * public static final PropertyId[] PROPERTY_IDS = new PropertyId[] { _clazz_PropertyId._property_, ... };
+     * 
+     * _Override
+     * protected int ordinalOf(Object propertyId) {
+     *     return propertyId instanceof PropertyId ? ((PropertyId) propertyId).ordinalIn(PROPERTY_IDS) : -1;
+     * }
+     * 
+     * _Override
+     * protected int getPropertyCount() {
+     *     return PROPERTY_IDS.length;
+     * }
+     * </code>
+     */
+    private void generatePropertyOrdinals(JDefinedClass item, List<String> propertyNames) {
+        JCodeModel codegen = item.owner();
+        JClass propertyIdType = codegen.ref(PropertyId.class);
+
+        JArray ids = JExpr.newArray(propertyIdType);
+        for (String name : propertyNames) {
+            ids.add(propertyIdMap.get(item).staticRef(name));
+        }
+        JFieldVar propertyIds =
+                item.field(JMod.PUBLIC | JMod.FINAL | JMod.STATIC, propertyIdType.array(), "PROPERTY_IDS", ids);
+
+        JMethod ordinalOf = item.method(JMod.PROTECTED, int.class, "ordinalOf");
+        ordinalOf.annotate(Override.class);
+        JVar propertyId = ordinalOf.param(Object.class, "propertyId");
+        ordinalOf.body()._return(
+                JOp.cond(propertyId._instanceof(propertyIdType),
+                        JExpr.cast(propertyIdType, propertyId).invoke("ordinalIn").arg(propertyIds), JExpr.lit(-1)));
+
+        JMethod getPropertyCount = item.method(JMod.PROTECTED, int.class, "getPropertyCount");
+        getPropertyCount.annotate(Override.class);
+        getPropertyCount.body()._return(propertyIds.ref("length"));
+    }
+
     /**
      * <code>
      * _Override
      * protected Property makeProperty(PropertyId propertyId) {
+     *     switch (ordinalOf(propertyId)) {
+     *     case _ordinal_:
+     *         return new ...;
+     *     }
      *     return null;
      * } </code>
      */
-    private void generateMakePropertyMethod(JDefinedClass item, DomainClass clazz, Map<String, JDefinedClass> propertyClasses) {
+    private void generateMakePropertyMethod(JDefinedClass item, DomainClass clazz, Map<String, JDefinedClass> propertyClasses,
+            Map<String, Integer> ordinals) {
         JCodeModel codegen = item.owner();
 
         JMethod makeProperty = item.method(JMod.PROTECTED, Property.class, "makeProperty");
         makeProperty.annotate(Override.class);
         JVar propertyId = makeProperty.param(PropertyId.class, "propertyId");
+        JSwitch byOrdinal = makeProperty.body()._switch(JExpr.invoke("ordinalOf").arg(propertyId));
         for (Slot slot : clazz.getSlotsList()) {
-            JConditional iff =
-                    makeProperty.body()._if(propertyIdMap.get(item).staticRef(slot.getName()).invoke("equals").arg(propertyId));
+            JCase kase = byOrdinal._case(JExpr.lit(ordinals.get(slot.getName())));
             JInvocation invoke = JExpr._new(codegen.ref(BufferedProperty.class).narrow(getSlotType(codegen, clazz, slot)));
             invoke.arg(JExpr._new(propertyClasses.get(slot.getName())));
             if (slot.getOptions().contains(Option.REQUIRED)) {
                 invoke.arg(JExpr._new(codegen.ref(Required.class)));
             }
-            iff._then()._return(invoke);
+            kase.body()._return(invoke);
         }
         for (Role role : clazz.getRoleSlotsList()) {
             if (role.getName() != null && !role.getType().getName().startsWith("Remote")) {
-                JConditional iff =
-                        makeProperty.body()._if(
-                                propertyIdMap.get(item).staticRef(role.getName()).invoke("equals").arg(propertyId));
+                JCase kase = byOrdinal._case(JExpr.lit(ordinals.get(role.getName())));
                 JInvocation invoke;
                 if (role.getMultiplicityUpper() == 1) {
                     if (itemMap.containsKey(role.getType())) {
@@ -627,7 +994,7 @@ public class VaadinProxiesCodeGenerator {
                 if (role.getMultiplicityLower() == 1) {
                     invoke.arg(JExpr._new(codegen.ref(Required.class)));
                 }
-                iff._then()._return(invoke);
+                kase.body()._return(invoke);
             }
         }
         if (clazz.hasSuperclass()) {
@@ -805,8 +1172,9 @@ public class VaadinProxiesCodeGenerator {
     }
 
     private JClass ref(JCodeModel model, DomainEntity clazz) {
+        // each code model is only used by one thread at a time
         if (!refMap.containsKey(model)) {
-            refMap.put(model, new HashMap<String, JClass>());
+            refMap.putIfAbsent(model, new HashMap<String, JClass>());
         }
         Map<String, JClass> src = refMap.get(model);
         if (!src.containsKey(clazz.getFullName())) {
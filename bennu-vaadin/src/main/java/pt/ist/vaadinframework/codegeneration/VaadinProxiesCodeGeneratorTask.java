@@ -22,12 +22,11 @@
 package pt.ist.vaadinframework.codegeneration;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Properties;
+import java.util.Map;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.DirectoryScanner;
@@ -40,7 +39,6 @@ import org.joda.time.format.PeriodFormatterBuilder;
 
 import pt.ist.fenixframework.DomainModelParser;
 import pt.ist.fenixframework.dml.DomainModel;
-import pt.utl.ist.fenix.tools.util.MultiProperty;
 
 import com.sun.codemodel.JClassAlreadyExistsException;
 
@@ -59,6 +57,8 @@ public class VaadinProxiesCodeGeneratorTask extends Task {
 
     private final List<FileSet> filesets = new ArrayList<FileSet>();
 
+    private int threads = Runtime.getRuntime().availableProcessors();
+
     public File getSrcBaseDir() {
         return srcBaseDir;
     }
@@ -91,6 +91,17 @@ public class VaadinProxiesCodeGeneratorTask extends Task {
         this.vaadinSrcDir = vaadinSrcDir;
     }
 
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Number of threads used to generate the proxies, the output is the same whatever the number of threads.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
     public void addFileset(FileSet fileset) {
         filesets.add(fileset);
     }
@@ -100,62 +111,43 @@ public class VaadinProxiesCodeGeneratorTask extends Task {
         super.execute();
 
         DateTime start = new DateTime();
-        final Properties properties = new MultiProperty();
         try {
-            properties.load(new FileInputStream(buildDir.getAbsolutePath() + "/WEB-INF/classes/configuration.properties"));
-            File timestampFile = new File(srcBaseDir, "vaadin-timestamp");
-            long latestBuildTime = srcBaseDir != null ? srcBaseDir.lastModified() : 0;
-
-            boolean shouldCompile = false;
-
-            // final String preInitClassnames =
-            // properties.getProperty("pre.init.classnames");
-            // System.out.println("Pre-init class names: " + preInitClassnames);
-            // if (preInitClassnames != null) {
-            // final String[] classnames = preInitClassnames.split(",");
-            // for (final String classname : classnames) {
-            // if (classname != null && !classname.isEmpty()) {
-            // try {
-            // Class.forName(classname.trim());
-            // } catch (final ClassNotFoundException e) {
-            // throw new Error(e);
-            // }
-            // }
-            // }
-            // }
-
             List<URL> domainModelURLs = new ArrayList<URL>();
-
-            // whereToInject keeps track where the DMLs for the plugin should
-            // be injected, so they are sequential injected and before the
-            // application DMLs
-
+            List<File> inputs = new ArrayList<File>();
             for (FileSet fileset : filesets) {
                 if (fileset.getDir().exists()) {
                     DirectoryScanner scanner = fileset.getDirectoryScanner(getProject());
                     String[] includedFiles = scanner.getIncludedFiles();
                     for (String includedFile : includedFiles) {
-                        String filePath = fileset.getDir().getAbsolutePath() + "/" + includedFile;
-                        File file = new File(filePath);
-                        boolean isModified = file.lastModified() > latestBuildTime;
-                        // System.out.println(includedFile + " : " + (isModified
-                        // ? "not up to date" : "up to date"));
-                        domainModelURLs.add(new File(filePath).toURI().toURL());
-                        shouldCompile = shouldCompile || isModified;
+                        File file = new File(fileset.getDir().getAbsolutePath() + "/" + includedFile);
+                        domainModelURLs.add(file.toURI().toURL());
+                        inputs.add(file);
                     }
                 }
             }
+            if (packageSourceLocations != null && packageSourceLocations.exists()) {
+                inputs.add(packageSourceLocations);
+            }
 
-            // first, get the domain model
-            DomainModel model = DomainModelParser.getDomainModel(domainModelURLs, false);
-            VaadinProxiesCodeGenerator generator =
-                    new VaadinProxiesCodeGenerator(model, srcBaseDir, vaadinSrcDir, packageSourceLocations);
-            generator.generate();
-            timestampFile.delete();
-            timestampFile.createNewFile();
-            // } else {
-            // System.out.println("All dml files are up to date, skipping generation");
-            // }
+            ProxyManifest manifest = ProxyManifest.load(new File(srcBaseDir, ProxyManifest.FILENAME));
+            String inputsHash =
+                    ProxyManifest.hash(VaadinProxiesCodeGenerator.GENERATOR_VERSION + vaadinSrcDir
+                            + ProxyManifest.hashFiles(inputs));
+            if (manifest.isUpToDate(inputsHash, srcBaseDir)) {
+                System.out.println("All dml files are up to date, skipping generation");
+            } else {
+                // first, get the domain model
+                DomainModel model = DomainModelParser.getDomainModel(domainModelURLs, false);
+                VaadinProxiesCodeGenerator generator =
+                        new VaadinProxiesCodeGenerator(model, srcBaseDir, vaadinSrcDir, packageSourceLocations);
+                generator.setParallelism(threads);
+                Map<String, String> hashes = generator.computeInputHashes();
+                generator.generate(manifest.getChangedClasses(hashes));
+                manifest.update(inputsHash, hashes, generator.getOutputs());
+                manifest.store();
+                System.out.println("Vaadin proxies: " + generator.getGeneratedCount() + " classes generated, "
+                        + generator.getSkippedCount() + " skipped");
+            }
         } catch (IOException e) {
             throw new BuildException(e);
         } catch (JClassAlreadyExistsException e) {
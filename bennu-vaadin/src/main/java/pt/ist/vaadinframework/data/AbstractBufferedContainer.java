@@ -21,17 +21,22 @@
  */
 package pt.ist.vaadinframework.data;
 
+import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
 
-import pt.ist.fenixframework.Atomic;
+import pt.ist.vaadinframework.data.util.ExtractedKeySorter;
+import pt.ist.vaadinframework.data.util.IndexedList;
 import pt.ist.vaadinframework.data.util.ServiceUtils;
+import pt.ist.vaadinframework.instrumentation.CommitInstrumentation;
 
 import com.vaadin.data.BufferedValidatable;
 import com.vaadin.data.Container;
@@ -40,6 +45,7 @@ import com.vaadin.data.Property;
 import com.vaadin.data.Validator;
 import com.vaadin.data.Validator.InvalidValueException;
 import com.vaadin.data.util.AbstractInMemoryContainer;
+import com.vaadin.data.util.ItemSorter;
 import com.vaadin.data.util.filter.UnsupportedFilterException;
 
 public abstract class AbstractBufferedContainer<ItemId, Id, ItemType extends AbstractBufferedItem<Id, ? extends ItemId>> extends
@@ -69,7 +75,7 @@ public abstract class AbstractBufferedContainer<ItemId, Id, ItemType extends Abs
 
         @Override
         protected List<Object> convertValue(Object value) throws ConversionException {
-            ArrayList<Object> result = new ArrayList<Object>();
+            IndexedList<Object> result = new IndexedList<Object>();
             if (value != null) {
                 if (value instanceof Iterable) {
                     for (Object itemId : (Iterable<?>) value) {
@@ -84,20 +90,44 @@ public abstract class AbstractBufferedContainer<ItemId, Id, ItemType extends Abs
 
         @Override
         protected void processNewCacheValue() {
+            markIndexDirty(0, Integer.MAX_VALUE);
             fireItemSetChange();
         }
 
-        @Atomic
         @Override
-        public void commit() throws SourceException, InvalidValueException {
+        protected String getCommitScope() {
+            return AbstractBufferedContainer.this.getCommitScope();
+        }
+
+        @Override
+        protected void validateForCommit() throws InvalidValueException {
+            for (Object itemId : getAllItemIds()) {
+                getUnfilteredItem(itemId).validateForCommit();
+            }
+            super.validateForCommit();
+        }
+
+        @Override
+        protected void commitInTransaction() throws SourceException {
             try {
-                for (Object itemId : getAllItemIds()) {
-                    if (indexPropertyId != null) {
-                        getContainerProperty(itemId, indexPropertyId).setValue(indexOfId(itemId));
+                List<Object> itemIds = getAllItemIds();
+                boolean filtered = isFiltered();
+                for (int i = 0; i < itemIds.size(); i++) {
+                    Object itemId = itemIds.get(i);
+                    if (indexPropertyId != null && (filtered || (i >= dirtyIndexFrom && i <= dirtyIndexTo))) {
+                        getContainerProperty(itemId, indexPropertyId).setValue(filtered ? indexOfId(itemId) : i);
                     }
                     getItem(itemId).commit();
                 }
-                ContainerPropertyWrapper.super.commit();
+                ContainerPropertyWrapper.super.commitInTransaction();
+                // an enclosing commit may still restart or fail, in which case the index must be rewritten again
+                CommitCoordinator.afterCommit(new Runnable() {
+                    @Override
+                    public void run() {
+                        dirtyIndexFrom = Integer.MAX_VALUE;
+                        dirtyIndexTo = -1;
+                    }
+                });
             } catch (Throwable e) {
                 ServiceUtils.handleException(e);
                 throw new SourceException(AbstractBufferedContainer.this, e);
@@ -147,6 +177,17 @@ public abstract class AbstractBufferedContainer<ItemId, Id, ItemType extends Abs
 
     protected Object indexPropertyId;
 
+    private Collator sortCollator;
+
+    private boolean customItemSorter = false;
+
+    /**
+     * Range of positions whose {@link #indexPropertyId} must be rewritten on commit, every position until the first commit.
+     */
+    private int dirtyIndexFrom = 0;
+
+    private int dirtyIndexTo = Integer.MAX_VALUE;
+
     private final ValueChangeListener itemChangeListener = new ValueChangeListener() {
         @Override
         public void valueChange(ValueChangeEvent event) {
@@ -160,6 +201,7 @@ public abstract class AbstractBufferedContainer<ItemId, Id, ItemType extends Abs
                 for (Entry<UUID, ItemType> entry : limboItems.entrySet()) {
                     if (entry.getValue().equals(item)) {
                         item.removeListener(this);
+                        markIndexDirty(getAllItemIds().indexOf(entry.getKey()), Integer.MAX_VALUE);
                         getAllItemIds().remove(entry.getKey());
                         limboItems.remove(entry.getKey());
                     }
@@ -200,15 +242,30 @@ public abstract class AbstractBufferedContainer<ItemId, Id, ItemType extends Abs
 
     public void setIndexProperty(Object propertyId) {
         indexPropertyId = propertyId;
+        markIndexDirty(0, Integer.MAX_VALUE);
+    }
+
+    private void markIndexDirty(int from, int to) {
+        dirtyIndexFrom = Math.min(dirtyIndexFrom, Math.max(from, 0));
+        dirtyIndexTo = Math.max(dirtyIndexTo, to);
     }
 
     // container implementation
 
+    /**
+     * The item ids are kept in an {@link IndexedList}, so membership and position lookups, and with them
+     * {@link #indexOfId(Object)} and {@link #nextItemId(Object)}, take constant time.
+     */
     @Override
     protected List<Object> getAllItemIds() {
         return value.getValue();
     }
 
+    @Override
+    protected void setFilteredItemIds(List<Object> filteredItemIds) {
+        super.setFilteredItemIds(filteredItemIds != null ? IndexedList.of(filteredItemIds) : null);
+    }
+
     @Override
     public Collection<Id> getContainerPropertyIds() {
         return Collections.unmodifiableCollection(propertyIds);
@@ -313,11 +370,72 @@ public abstract class AbstractBufferedContainer<ItemId, Id, ItemType extends Abs
     // container sortable interface
 
     /**
+     * Sorts by reading every sort property once per item, see {@link ExtractedKeySorter}. Containers with an item sorter of
+     * their own fall back to sorting with that sorter.
+     * 
      * @see Container.Sortable#sort(java.lang.Object[], boolean[])
      */
     @Override
     public void sort(Object[] propertyId, boolean[] ascending) {
-        sortContainer(propertyId, ascending);
+        if (customItemSorter) {
+            sortContainer(propertyId, ascending);
+            return;
+        }
+        getItemSorter().setSortProperties(this, propertyId, ascending);
+
+        Collection<?> sortable = getSortableContainerPropertyIds();
+        List<Object> sortIds = new ArrayList<Object>();
+        List<Boolean> sortAscending = new ArrayList<Boolean>();
+        for (int i = 0; i < propertyId.length; i++) {
+            if (sortable.contains(propertyId[i])) {
+                sortIds.add(propertyId[i]);
+                sortAscending.add(i < ascending.length ? ascending[i] : true);
+            }
+        }
+
+        List<Object> itemIds = getAllItemIds();
+        Object[][] values = new Object[sortIds.size()][itemIds.size()];
+        for (int i = 0; i < itemIds.size(); i++) {
+            ItemType item = getUnfilteredItem(itemIds.get(i));
+            for (int column = 0; column < sortIds.size(); column++) {
+                Property property = item.getItemProperty(sortIds.get(column));
+                values[column][i] = property != null ? property.getValue() : null;
+            }
+        }
+        boolean[] directions = new boolean[sortAscending.size()];
+        for (int column = 0; column < directions.length; column++) {
+            directions[column] = sortAscending.get(column);
+        }
+
+        int[] order = new ExtractedKeySorter(values, directions, sortCollator).sort();
+        Object[] unsorted = itemIds.toArray();
+        for (int i = 0; i < order.length; i++) {
+            itemIds.set(i, unsorted[order[i]]);
+        }
+        markIndexDirty(0, Integer.MAX_VALUE);
+
+        if (isFiltered()) {
+            filterAll();
+        } else {
+            fireItemSetChange();
+        }
+    }
+
+    /**
+     * Sets the collator used to compare string properties when sorting. Without one strings are sorted by their natural order.
+     */
+    public void setSortCollator(Collator sortCollator) {
+        this.sortCollator = sortCollator;
+    }
+
+    public Collator getSortCollator() {
+        return sortCollator;
+    }
+
+    @Override
+    protected void setItemSorter(ItemSorter itemSorter) {
+        super.setItemSorter(itemSorter);
+        customItemSorter = true;
     }
 
     /**
@@ -366,11 +484,30 @@ public abstract class AbstractBufferedContainer<ItemId, Id, ItemType extends Abs
 
     protected abstract ItemType makeItem(Class<? extends ItemId> type);
 
-    @Atomic
-    public void addItemBatch(Collection<ItemId> itemIds) {
-        for (ItemId itemId : itemIds) {
-            addItem(itemId);
-        }
+    /**
+     * Adds the given items. The items are made in a single {@link RenderingTransaction}, which only reads, and then added in a
+     * single commit, since adding to a write-through container writes to the domain.
+     */
+    public void addItemBatch(final Collection<ItemId> itemIds) {
+        final List<ItemType> batch = new ArrayList<ItemType>(itemIds.size());
+        RenderingTransaction.renderAtomically("load:" + getElementType(), new Runnable() {
+            @Override
+            public void run() {
+                batch.clear();
+                for (ItemId itemId : itemIds) {
+                    batch.add(makeItem(itemId));
+                }
+            }
+        });
+        CommitCoordinator.run(getCommitScope(), new Runnable() {
+            @Override
+            public void run() {
+                Iterator<ItemType> items = batch.iterator();
+                for (ItemId itemId : itemIds) {
+                    internalAddItemAtEnd(itemId, items.next(), true);
+                }
+            }
+        });
     }
 
     @Override
@@ -425,6 +562,7 @@ public abstract class AbstractBufferedContainer<ItemId, Id, ItemType extends Abs
         items.put((ItemId) itemId, item);
         item.addListener(itemChangeListener);
         value.modified = true;
+        markIndexDirty(getAllItemIds().indexOf(itemId), Integer.MAX_VALUE);
         if (isWriteThrough()) {
             commit();
         }
@@ -437,6 +575,7 @@ public abstract class AbstractBufferedContainer<ItemId, Id, ItemType extends Abs
             throw new ReadOnlyException();
         }
         int position = indexOfId(itemId);
+        int unfilteredPosition = getAllItemIds().indexOf(itemId);
         boolean result = super.internalRemoveItem(itemId);
         if (result) {
             if (limboItems.containsKey(itemId)) {
@@ -445,6 +584,7 @@ public abstract class AbstractBufferedContainer<ItemId, Id, ItemType extends Abs
             } else if (items.containsKey(itemId)) {
                 items.get(itemId).removeListener(itemChangeListener);
                 items.remove(itemId);
+                markIndexDirty(unfilteredPosition, Integer.MAX_VALUE);
                 value.modified = true;
                 if (isWriteThrough()) {
                     commit();
@@ -455,6 +595,92 @@ public abstract class AbstractBufferedContainer<ItemId, Id, ItemType extends Abs
         return result;
     }
 
+    /**
+     * Moves an item to another position, firing a single item set change and marking only the positions in between for the
+     * {@link #setIndexProperty(Object) index property} rewrite. The item keeps its buffered state, unlike removing it and adding
+     * it again.
+     * 
+     * @param newIndex
+     *            the position of the item in the visible, possibly filtered, items once moved.
+     * @return false if the item is not in the container.
+     */
+    public boolean moveItem(Object itemId, int newIndex) throws UnsupportedOperationException {
+        if (isReadOnly()) {
+            throw new ReadOnlyException();
+        }
+        List<Object> itemIds = getAllItemIds();
+        int from = itemIds.indexOf(itemId);
+        if (from == -1) {
+            return false;
+        }
+        if (newIndex < 0 || newIndex >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + newIndex + ", Size: " + size());
+        }
+        int to = isFiltered() ? itemIds.indexOf(getIdByIndex(newIndex)) : newIndex;
+        if (from == to) {
+            return true;
+        }
+        if (from < to) {
+            Collections.rotate(itemIds.subList(from, to + 1), -1);
+        } else {
+            Collections.rotate(itemIds.subList(to, from + 1), 1);
+        }
+        reordered(Math.min(from, to), Math.max(from, to));
+        return true;
+    }
+
+    /**
+     * Puts all the items in the given order, firing a single item set change and marking only the positions that changed for
+     * the {@link #setIndexProperty(Object) index property} rewrite.
+     * 
+     * @param newOrder
+     *            the ids of all the items of the container, including the ones hidden by filters.
+     * @throws IllegalArgumentException
+     *             if the given ids are not the ones in the container.
+     */
+    public void reorder(List<?> newOrder) throws UnsupportedOperationException {
+        if (isReadOnly()) {
+            throw new ReadOnlyException();
+        }
+        List<Object> itemIds = getAllItemIds();
+        if (newOrder.size() != itemIds.size() || new HashSet<Object>(newOrder).size() != itemIds.size()) {
+            throw new IllegalArgumentException("The new order must contain each item of the container once");
+        }
+        for (Object itemId : newOrder) {
+            if (!itemIds.contains(itemId)) {
+                throw new IllegalArgumentException("Not an item of the container: " + itemId);
+            }
+        }
+        int first = 0;
+        while (first < newOrder.size() && newOrder.get(first).equals(itemIds.get(first))) {
+            first++;
+        }
+        if (first == newOrder.size()) {
+            return;
+        }
+        int last = newOrder.size() - 1;
+        while (newOrder.get(last).equals(itemIds.get(last))) {
+            last--;
+        }
+        for (int i = first; i <= last; i++) {
+            itemIds.set(i, newOrder.get(i));
+        }
+        reordered(first, last);
+    }
+
+    private void reordered(int from, int to) {
+        markIndexDirty(from, to);
+        value.modified = true;
+        if (isWriteThrough()) {
+            commit();
+        }
+        if (isFiltered()) {
+            filterAll();
+        } else {
+            fireItemSetChange();
+        }
+    }
+
     @Override
     protected void internalRemoveAllItems() {
         if (isReadOnly()) {
@@ -471,6 +697,7 @@ public abstract class AbstractBufferedContainer<ItemId, Id, ItemType extends Abs
             item.removeListener(itemChangeListener);
         }
         if (size > 0) {
+            markIndexDirty(0, Integer.MAX_VALUE);
             value.modified = true;
             if (isWriteThrough()) {
                 commit();
@@ -555,21 +782,24 @@ public abstract class AbstractBufferedContainer<ItemId, Id, ItemType extends Abs
         value.removeListener(listener);
     }
 
-    @Atomic
+    /**
+     * Commits the items and the element list through the {@link CommitCoordinator}, see
+     * {@link ContainerPropertyWrapper#commit()}.
+     */
     @Override
     public void commit() throws SourceException, InvalidValueException {
-        try {
-            for (Object itemId : getAllItemIds()) {
-                if (indexPropertyId != null) {
-                    getContainerProperty(itemId, indexPropertyId).setValue(indexOfId(itemId));
-                }
-                getItem(itemId).commit();
-            }
-            value.commit();
-        } catch (Throwable e) {
-            ServiceUtils.handleException(e);
-            throw new SourceException(AbstractBufferedContainer.this, e);
-        }
+        value.commit();
+    }
+
+    /**
+     * @return the scope the commits of this container are accounted to, see {@link CommitInstrumentation}.
+     */
+    protected String getCommitScope() {
+        return elementType != null ? CommitInstrumentation.CLASS_SCOPE + elementType.getName() : null;
+    }
+
+    protected void validateForCommit() throws InvalidValueException {
+        value.validateForCommit();
     }
 
     @Override
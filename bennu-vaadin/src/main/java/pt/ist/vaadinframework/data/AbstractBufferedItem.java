@@ -21,19 +21,17 @@
  */
 package pt.ist.vaadinframework.data;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EventObject;
 import java.util.HashMap;
 import java.util.LinkedList;
 
-import org.apache.commons.lang.StringUtils;
-
-import pt.ist.fenixframework.Atomic;
 import pt.ist.vaadinframework.data.util.ServiceUtils;
+import pt.ist.vaadinframework.instrumentation.CommitInstrumentation;
+import pt.ist.vaadinframework.terminal.ThrowableAnalysis;
 
 import com.vaadin.data.Buffered;
 import com.vaadin.data.BufferedValidatable;
@@ -48,6 +46,8 @@ public abstract class AbstractBufferedItem<Id, Type> extends BufferedProperty<Ty
 
     private final HashMap<Id, Property> map = new HashMap<Id, Property>();
 
+    private Property[] indexed;
+
     private ItemConstructor<Id> constructor;
 
     private ItemWriter<Id> writer;
@@ -90,13 +90,25 @@ public abstract class AbstractBufferedItem<Id, Type> extends BufferedProperty<Ty
             throw new NullPointerException("Item property id can not be null");
         }
 
-        // Cant add a property twice
-        if (map.containsKey(propertyId)) {
-            return false;
-        }
+        int ordinal = ordinalOf(propertyId);
+        if (ordinal >= 0) {
+            if (indexed == null) {
+                indexed = new Property[getPropertyCount()];
+            }
+            // Cant add a property twice
+            if (indexed[ordinal] != null) {
+                return false;
+            }
+            indexed[ordinal] = property;
+        } else {
+            // Cant add a property twice
+            if (map.containsKey(propertyId)) {
+                return false;
+            }
 
-        // Put the property to map
-        map.put((Id) propertyId, property);
+            // Put the property to map
+            map.put((Id) propertyId, property);
+        }
         list.add((Id) propertyId);
 
         // Send event
@@ -106,8 +118,15 @@ public abstract class AbstractBufferedItem<Id, Type> extends BufferedProperty<Ty
 
     @Override
     public boolean removeItemProperty(Object propertyId) {
-        // Cant remove missing properties
-        if (map.remove(propertyId) == null) {
+        int ordinal = ordinalOf(propertyId);
+        if (ordinal >= 0) {
+            // Cant remove missing properties
+            if (indexed == null || indexed[ordinal] == null) {
+                return false;
+            }
+            indexed[ordinal] = null;
+        } else if (map.remove(propertyId) == null) {
+            // Cant remove missing properties
             return false;
         }
         list.remove(propertyId);
@@ -134,6 +153,17 @@ public abstract class AbstractBufferedItem<Id, Type> extends BufferedProperty<Ty
 
     @Override
     public Property getItemProperty(Object propertyId) {
+        int ordinal = ordinalOf(propertyId);
+        if (ordinal >= 0) {
+            Property property = indexed != null ? indexed[ordinal] : null;
+            if (property == null) {
+                property = makeProperty((Id) propertyId);
+                if (property != null) {
+                    addItemProperty(propertyId, property);
+                }
+            }
+            return property;
+        }
         Property property = map.get(propertyId);
         if (property == null) {
             property = makeProperty((Id) propertyId);
@@ -143,10 +173,11 @@ public abstract class AbstractBufferedItem<Id, Type> extends BufferedProperty<Ty
 
     /**
      * Lazy creation of properties, this method is invoked for every propertyId
-     * that is requested of the Item. The created properties are not
-     * automatically registered in the item, you have to invoke {@link #addItemProperty(Object, Property)} yourself. You also need
-     * to
-     * ensure that the returned properties are of {@link BufferedProperty}s or {@link Item}s or {@link Collection}s over
+     * that is requested of the Item. Properties with an ordinal (see {@link #ordinalOf(Object)}) are registered by
+     * {@link #getItemProperty(Object)} itself, so implementations must not call {@link #addItemProperty(Object, Property)} for
+     * them: it returns false for an ordinal that is already registered. Other created properties are not automatically
+     * registered in the item, you have to invoke {@link #addItemProperty(Object, Property)} yourself. You also need to ensure
+     * that the returned properties are of {@link BufferedProperty}s or {@link Item}s or {@link Collection}s over
      * {@link BufferedProperty}s.
      * 
      * @param propertyId
@@ -155,13 +186,46 @@ public abstract class AbstractBufferedItem<Id, Type> extends BufferedProperty<Ty
      */
     protected abstract Property makeProperty(Id propertyId);
 
-    @Atomic
+    /**
+     * Items whose properties are known in advance, like the generated proxies, give each property a dense ordinal. Those
+     * properties are kept in an array indexed by ordinal instead of the hash map, and are registered in the item when first
+     * made.
+     * 
+     * @return the ordinal of the property, or -1 if the property has none.
+     */
+    protected int ordinalOf(Object propertyId) {
+        return -1;
+    }
+
+    /**
+     * @return the number of properties with ordinals, see {@link #ordinalOf(Object)}.
+     */
+    protected int getPropertyCount() {
+        return 0;
+    }
+
     @Override
-    public void commit() throws SourceException, InvalidValueException {
-        try {
-            if (!isInvalidCommitted() && !isValid()) {
-                validate();
+    protected String getCommitScope() {
+        Class<?> type = getType();
+        return type != null ? CommitInstrumentation.CLASS_SCOPE + type.getName() : null;
+    }
+
+    @Override
+    protected void validateForCommit() throws InvalidValueException {
+        for (Id propertyId : getItemPropertyIds()) {
+            Property property = getItemProperty(propertyId);
+            if (property instanceof BufferedProperty) {
+                ((BufferedProperty<?>) property).validateForCommit();
+            } else if (property instanceof AbstractBufferedContainer) {
+                ((AbstractBufferedContainer<?, ?, ?>) property).validateForCommit();
             }
+        }
+        super.validateForCommit();
+    }
+
+    @Override
+    protected void commitInTransaction() throws SourceException {
+        try {
             if (cache == null) {
                 construct(true);
                 fireValueChange();
@@ -175,6 +239,7 @@ public abstract class AbstractBufferedItem<Id, Type> extends BufferedProperty<Ty
             }
             if (isModified()) {
                 wrapped.setValue(cache);
+                CommitInstrumentation.wrote(1);
             }
             discard();
             modified = false;
@@ -188,9 +253,11 @@ public abstract class AbstractBufferedItem<Id, Type> extends BufferedProperty<Ty
         Object value;
         if (constructor != null) {
             try {
-                Method method = findMethod(constructor.getClass(), getArgumentTypes(constructor.getOrderedArguments()));
-                Object[] argumentValues = readArguments(constructor.getOrderedArguments());
-                value = method.invoke(constructor, argumentValues);
+                Id[] arguments = constructor.getOrderedArguments();
+                MethodHandle invoker = ItemInvokers.get(constructor.getClass(), getType(), getArgumentTypes(arguments, 0));
+                Object[] argumentValues = readArguments(arguments, 1);
+                argumentValues[0] = constructor;
+                value = (Object) invoker.invokeExact(argumentValues);
             } catch (Throwable e) {
                 ServiceUtils.handleException(e);
                 throw new SourceException(this, e);
@@ -210,22 +277,23 @@ public abstract class AbstractBufferedItem<Id, Type> extends BufferedProperty<Ty
     private void applyWriter() {
         if (writer != null) {
             try {
-                if (fieldDiffer(writer.getOrderedArguments())) {
-                    LinkedList<Class<?>> argumentTypes = new LinkedList<Class<?>>();
-                    argumentTypes.add(getType());
-                    argumentTypes.addAll(Arrays.asList(getArgumentTypes(writer.getOrderedArguments())));
-                    Method method = findMethod(writer.getClass(), argumentTypes.toArray(new Class<?>[0]));
-                    LinkedList<Object> argumentValues = new LinkedList<Object>();
-                    argumentValues.add(cache);
-                    argumentValues.addAll(Arrays.asList(readArguments(writer.getOrderedArguments())));
+                Id[] arguments = writer.getOrderedArguments();
+                if (fieldDiffer(arguments)) {
+                    Class<?>[] argumentTypes = getArgumentTypes(arguments, 1);
+                    argumentTypes[0] = getType();
+                    MethodHandle invoker = ItemInvokers.get(writer.getClass(), getType(), argumentTypes);
+                    Object[] argumentValues = readArguments(arguments, 2);
+                    argumentValues[0] = writer;
+                    argumentValues[1] = cache;
                     // VaadinFrameworkLogger.getLogger().debug(
                     // "persisting item with writer with properties: ["
                     // + StringUtils.join(writer.getOrderedArguments(), ", ") +
                     // "] with values: ["
                     // + StringUtils.join(argumentValues.subList(1,
                     // argumentValues.size()), ", ") + "]");
-                    method.invoke(writer, argumentValues.toArray(new Object[0]));
-                    for (Id id : writer.getOrderedArguments()) {
+                    // invokeExact requires the exact (Object[])Object call site, hence the unused result
+                    Object result = (Object) invoker.invokeExact(argumentValues);
+                    for (Id id : arguments) {
                         if (getItemProperty(id) instanceof Buffered) {
                             ((Buffered) getItemProperty(id)).discard();
                         }
@@ -239,18 +307,7 @@ public abstract class AbstractBufferedItem<Id, Type> extends BufferedProperty<Ty
     }
 
     private ArrayList<Throwable> getAllCauses(Throwable t) {
-        final ArrayList<Throwable> causes = new ArrayList<Throwable>();
-        causes.add(t);
-        if (t instanceof Buffered.SourceException) {
-            for (Throwable sec : ((Buffered.SourceException) t).getCauses()) {
-                causes.addAll(getAllCauses(sec));
-            }
-        } else {
-            if (t.getCause() != null) {
-                causes.addAll(getAllCauses(t.getCause()));
-            }
-        }
-        return causes;
+        return new ArrayList<Throwable>(ThrowableAnalysis.of(t).getChain());
     }
 
     // private Buffered.SourceException
@@ -280,47 +337,30 @@ public abstract class AbstractBufferedItem<Id, Type> extends BufferedProperty<Ty
         return false;
     }
 
-    private Method findMethod(Class<?> type, Class<?>[] types) throws NoSuchMethodException {
-        for (Method method : type.getMethods()) {
-            Class<?>[] mTypes = method.getParameterTypes();
-            boolean match = true;
-            for (int i = 0; i < types.length; i++) {
-                if (i >= mTypes.length) {
-                    match = false;
-                    break;
-                }
-                if (!mTypes[i].isAssignableFrom(Object.class) && !mTypes[i].isAssignableFrom(types[i])) {
-                    match = false;
-                    break;
-                }
-            }
-            if (!getType().isAssignableFrom(method.getReturnType())) {
-                match = false;
-            }
-            if (match) {
-                return method;
-            }
-        }
-        final String message =
-                "Must specify a method in class %s with a signature compatible with the arguments in getOrderedArguments() [%s]";
-        throw new NoSuchMethodException(String.format(message, type.getName(), StringUtils.join(types, ",")));
-    }
-
-    private Class<?>[] getArgumentTypes(Id[] argumentIds) {
-        Class<?>[] types = new Class<?>[argumentIds.length];
+    /**
+     * @param offset
+     *            number of leading slots left free for the caller.
+     */
+    private Class<?>[] getArgumentTypes(Id[] argumentIds, int offset) {
+        Class<?>[] types = new Class<?>[offset + argumentIds.length];
         for (int i = 0; i < argumentIds.length; i++) {
-            types[i] = getItemProperty(argumentIds[i]).getType();
+            types[offset + i] = getItemProperty(argumentIds[i]).getType();
         }
         return types;
     }
 
-    private Object[] readArguments(Id[] argumentIds) {
-        Object[] arguments = new Object[argumentIds.length];
+    /**
+     * @param offset
+     *            number of leading slots left free for the caller.
+     */
+    private Object[] readArguments(Id[] argumentIds, int offset) {
+        Object[] arguments = new Object[offset + argumentIds.length];
         for (int i = 0; i < argumentIds.length; i++) {
-            if (getItemProperty(argumentIds[i]) instanceof AbstractBufferedItem) {
-                ((AbstractBufferedItem<?, ?>) getItemProperty(argumentIds[i])).construct(false);
+            Property property = getItemProperty(argumentIds[i]);
+            if (property instanceof AbstractBufferedItem) {
+                ((AbstractBufferedItem<?, ?>) property).construct(false);
             }
-            arguments[i] = getItemProperty(argumentIds[i]).getValue();
+            arguments[offset + i] = property.getValue();
         }
         return arguments;
     }
@@ -5,8 +5,8 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
-import pt.ist.fenixframework.Atomic;
 import pt.ist.vaadinframework.data.util.ServiceUtils;
+import pt.ist.vaadinframework.instrumentation.CommitInstrumentation;
 
 import com.vaadin.data.BufferedValidatable;
 import com.vaadin.data.Property;
@@ -129,17 +129,40 @@ public class BufferedProperty<Type> extends AbstractHintedProperty<Type> impleme
     }
 
     /**
+     * Commits through the {@link CommitCoordinator}, in the transaction of the enclosing commit if there is one.
+     * 
      * @see com.vaadin.data.Buffered#commit()
      */
-    @Atomic
     @Override
     public void commit() throws SourceException, InvalidValueException {
+        CommitCoordinator.commit(this);
+    }
+
+    /**
+     * @return the scope the commits of this property are accounted to, see {@link CommitInstrumentation}.
+     */
+    protected String getCommitScope() {
+        return null;
+    }
+
+    /**
+     * Validation of the outermost commit, run before the transaction starts. Overriders must validate all the buffered
+     * properties they commit in {@link #commitInTransaction()}.
+     */
+    protected void validateForCommit() throws InvalidValueException {
+        if (!isInvalidCommitted() && !isValid()) {
+            validate();
+        }
+    }
+
+    /**
+     * The transactional part of {@link #commit()}, always run inside the transaction of a coordinated commit.
+     */
+    protected void commitInTransaction() throws SourceException {
         try {
-            if (!isInvalidCommitted() && !isValid()) {
-                validate();
-            }
             if (isModified()) {
                 wrapped.setValue(cache);
+                CommitInstrumentation.wrote(1);
             }
             modified = false;
         } catch (Throwable e) {
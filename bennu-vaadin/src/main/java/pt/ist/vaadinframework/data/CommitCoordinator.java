@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.core.WriteOnReadError;
+import pt.ist.vaadinframework.instrumentation.CommitInstrumentation;
+
+import com.vaadin.data.Buffered;
+import com.vaadin.data.Buffered.SourceException;
+import com.vaadin.data.Validator.InvalidValueException;
+
+/**
+ * Runs the commit of a whole buffered object graph in a single transaction. The outermost commit of a thread validates the
+ * graph, then opens the only {@code @Atomic} scope and runs its in-transaction commit, inside which the commits of the nested
+ * properties, items and containers join the running commit and do their work directly, without validating again or entering
+ * further atomic scopes. Every commit goes through the {@link CommitInstrumentation}, which accounts for retries and applies the
+ * retry policy.
+ * 
+ * State that must only change once the commit is durable is updated in {@link #afterCommit(Runnable)} actions, run when the
+ * outermost commit succeeds and dropped when an attempt restarts or fails.
+ */
+public class CommitCoordinator {
+    private static final ThreadLocal<List<Runnable>> afterCommit = new ThreadLocal<List<Runnable>>();
+
+    private CommitCoordinator() {
+    }
+
+    /**
+     * @return true if a coordinated commit is running in this thread.
+     */
+    public static boolean isCommitting() {
+        return CommitInstrumentation.current() != null;
+    }
+
+    /**
+     * Runs the pre-transaction validation of a buffered property, item or container, other data sources are ignored.
+     * 
+     * @throws SourceException
+     *             if the data source or one of its buffered properties is invalid.
+     */
+    public static void validate(Object dataSource) throws SourceException {
+        try {
+            if (dataSource instanceof BufferedProperty) {
+                ((BufferedProperty<?>) dataSource).validateForCommit();
+            } else if (dataSource instanceof AbstractBufferedContainer) {
+                ((AbstractBufferedContainer<?, ?, ?>) dataSource).validateForCommit();
+            }
+        } catch (InvalidValueException e) {
+            throw new SourceException((Buffered) dataSource, e);
+        }
+    }
+
+    /**
+     * Commits a buffered property, item or container property: validates it first when it is the outermost commit, then runs
+     * {@link BufferedProperty#commitInTransaction()} in the transaction.
+     */
+    static void commit(final BufferedProperty<?> unit) throws SourceException {
+        if (!isCommitting()) {
+            validate(unit);
+        }
+        run(unit.getCommitScope(), new Runnable() {
+            @Override
+            public void run() {
+                unit.commitInTransaction();
+            }
+        });
+    }
+
+    /**
+     * Runs the given work in the transaction of the running commit, or in a new transaction when there is none.
+     * 
+     * @throws RenderingWriteException
+     *             if called while rendering, see {@link RenderingTransaction}.
+     * 
+     * @param scope
+     *            see {@link CommitInstrumentation#commit(String, Runnable)}.
+     */
+    public static void run(String scope, final Runnable work) throws RenderingWriteException {
+        RenderingTransaction.checkNotRendering();
+        if (isCommitting()) {
+            CommitInstrumentation.commit(scope, work);
+        } else {
+            final List<Runnable> actions = new ArrayList<Runnable>();
+            afterCommit.set(actions);
+            try {
+                CommitInstrumentation.commit(scope, new Runnable() {
+                    @Override
+                    public void run() {
+                        runInTransaction(work);
+                    }
+                });
+            } finally {
+                afterCommit.remove();
+            }
+            for (Runnable action : actions) {
+                action.run();
+            }
+        }
+    }
+
+    /**
+     * Runs the given action once the outermost commit of this thread succeeds, or right away when no commit is running. The
+     * actions registered by an attempt that restarts are discarded, the new attempt registers them again.
+     */
+    static void afterCommit(Runnable action) {
+        List<Runnable> actions = afterCommit.get();
+        if (actions != null) {
+            actions.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    @Atomic
+    static void runInTransaction(Runnable work) {
+        afterCommit.get().clear();
+        CommitInstrumentation.attempt();
+        try {
+            work.run();
+        } catch (WriteOnReadError e) {
+            // the restart that follows only upgrades the transaction to read-write
+            CommitInstrumentation.restarting(e);
+            throw e;
+        }
+    }
+}
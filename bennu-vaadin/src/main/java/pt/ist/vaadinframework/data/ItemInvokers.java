@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.data;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Resolved {@link ItemConstructor} and {@link ItemWriter} methods, cached per strategy class, item type and argument types. The
+ * method search only runs the first time a signature is seen, afterwards items invoke a {@link MethodHandle} that takes the
+ * receiver and the arguments in a single array.
+ */
+class ItemInvokers {
+    private static class Signature {
+        private final Class<?> owner;
+
+        private final Class<?> returnType;
+
+        private final Class<?>[] argumentTypes;
+
+        private final int hash;
+
+        public Signature(Class<?> owner, Class<?> returnType, Class<?>[] argumentTypes) {
+            this.owner = owner;
+            this.returnType = returnType;
+            this.argumentTypes = argumentTypes;
+            this.hash = 31 * (31 * owner.hashCode() + returnType.hashCode()) + Arrays.hashCode(argumentTypes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof Signature) {
+                Signature other = (Signature) obj;
+                return owner == other.owner && returnType == other.returnType
+                        && Arrays.equals(argumentTypes, other.argumentTypes);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final ConcurrentMap<Signature, MethodHandle> invokers = new ConcurrentHashMap<Signature, MethodHandle>();
+
+    /**
+     * @param owner
+     *            the constructor or writer class.
+     * @param returnType
+     *            the item type, the method must return it or a subtype.
+     * @param argumentTypes
+     *            the types of the arguments the method must accept.
+     * @return a handle of type {@code (Object[])Object} expecting the receiver followed by the arguments.
+     */
+    public static MethodHandle get(Class<?> owner, Class<?> returnType, Class<?>[] argumentTypes) throws NoSuchMethodException,
+            IllegalAccessException {
+        Signature signature = new Signature(owner, returnType, argumentTypes);
+        MethodHandle invoker = invokers.get(signature);
+        if (invoker == null) {
+            Method method = findMethod(owner, returnType, argumentTypes);
+            try {
+                method.setAccessible(true);
+            } catch (SecurityException e) {
+            }
+            int arity = method.getParameterTypes().length + 1;
+            invoker =
+                    MethodHandles.lookup().unreflect(method).asType(MethodType.genericMethodType(arity))
+                            .asSpreader(Object[].class, arity);
+            MethodHandle previous = invokers.putIfAbsent(signature, invoker);
+            if (previous != null) {
+                invoker = previous;
+            }
+        }
+        return invoker;
+    }
+
+    private static Method findMethod(Class<?> type, Class<?> returnType, Class<?>[] types) throws NoSuchMethodException {
+        for (Method method : type.getMethods()) {
+            Class<?>[] mTypes = method.getParameterTypes();
+            boolean match = true;
+            for (int i = 0; i < types.length; i++) {
+                if (i >= mTypes.length) {
+                    match = false;
+                    break;
+                }
+                if (!mTypes[i].isAssignableFrom(Object.class) && !mTypes[i].isAssignableFrom(types[i])) {
+                    match = false;
+                    break;
+                }
+            }
+            if (!returnType.isAssignableFrom(method.getReturnType())) {
+                match = false;
+            }
+            if (match) {
+                return method;
+            }
+        }
+        final String message =
+                "Must specify a method in class %s with a signature compatible with the arguments in getOrderedArguments() [%s]";
+        throw new NoSuchMethodException(String.format(message, type.getName(), StringUtils.join(types, ",")));
+    }
+}
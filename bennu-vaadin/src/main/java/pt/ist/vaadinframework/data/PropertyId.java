@@ -29,11 +29,38 @@ import java.util.List;
  * @author Pedro Santos (pedro.miguel.santos@ist.utl.pt)
  */
 public class PropertyId implements Serializable {
+    /**
+     * The index of an id in an array of ids, immutable so it can be shared between threads without locking.
+     */
+    private static class Resolution {
+        private final PropertyId[] ids;
+
+        private final int index;
+
+        Resolution(PropertyId[] ids, int index) {
+            this.ids = ids;
+            this.index = index;
+        }
+    }
+
     private final List<Object> path;
 
+    private final int ordinal;
+
+    private transient Resolution resolution;
+
     public PropertyId(Object piece) {
+        this(piece, -1);
+    }
+
+    /**
+     * @param ordinal
+     *            the position of the property among all the properties of its item type, as assigned by the generated proxies.
+     */
+    public PropertyId(Object piece, int ordinal) {
         path = new ArrayList<Object>();
         path.add(piece);
+        this.ordinal = ordinal;
     }
 
     protected PropertyId(PropertyId propertyId, Object piece) {
@@ -43,12 +70,46 @@ public class PropertyId implements Serializable {
 
     protected PropertyId(List<Object> path) {
         this.path = new ArrayList<Object>(path);
+        this.ordinal = -1;
     }
 
     public List<Object> getPath() {
         return path;
     }
 
+    /**
+     * @return the ordinal given at construction, -1 for ids built by hand or composed from other ids.
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Resolves the ordinal of this id among the ids of an item type, indexed by ordinal. The ordinal carried by the id is
+     * confirmed by identity, ids without an ordinal or from other item types are looked up by path once per array of ids and
+     * the result is remembered until the id is resolved against another array.
+     * 
+     * @return the index of this id in the given ids, -1 if absent.
+     */
+    public int ordinalIn(PropertyId[] ids) {
+        if (ordinal >= 0 && ordinal < ids.length && ids[ordinal] == this) {
+            return ordinal;
+        }
+        final Resolution last = resolution;
+        if (last != null && last.ids == ids) {
+            return last.index;
+        }
+        int index = -1;
+        for (int i = 0; i < ids.length; i++) {
+            if (equals(ids[i])) {
+                index = i;
+                break;
+            }
+        }
+        resolution = new Resolution(ids, index);
+        return index;
+    }
+
     public PropertyId first() {
         return new PropertyId(path.get(0));
     }
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import pt.ist.fenixframework.Atomic;
+import pt.ist.fenixframework.Atomic.TxMode;
+import pt.ist.fenixframework.core.WriteOnReadError;
+import pt.ist.vaadinframework.VaadinFrameworkLogger;
+
+/**
+ * Runs rendering work, painting, container refreshes and search result loading, in a read-only snapshot transaction, which
+ * has no write set to track and never conflicts. Nested rendering and rendering inside a running commit join the enclosing
+ * transaction.
+ * 
+ * Rendering must not write: a write attempted while rendering, either a buffered commit or a write to a domain object, is
+ * logged with the rendering site, counted in {@link #getWriteAttempts()} and fails with a {@link RenderingWriteException}.
+ * The exception is raised inside the read-only transaction in place of the {@link WriteOnReadError}, so the transaction
+ * manager does not restart the work in a read-write transaction.
+ * 
+ * The read-only mode is opt-in, turned on with the {@link #READ_ONLY_PROPERTY} system property or {@link #setReadOnly(boolean)}
+ * once an application no longer writes while rendering. Until then {@link #render(String, Runnable)} runs the work as it is,
+ * without a transaction of its own, so that work with side effects outside the domain, like painting a response, is never run
+ * twice by a restart. Only the sites that used to be atomic go through {@link #renderAtomically(String, Runnable)}, which
+ * keeps them in a read-write transaction.
+ */
+public class RenderingTransaction {
+    public static final String READ_ONLY_PROPERTY = "bennu.vaadin.rendering.readOnly";
+
+    private static volatile boolean readOnly = Boolean.parseBoolean(System.getProperty(READ_ONLY_PROPERTY, "false"));
+
+    private static final ThreadLocal<String> current = new ThreadLocal<String>();
+
+    private static final AtomicLong writeAttempts = new AtomicLong();
+
+    private RenderingTransaction() {
+    }
+
+    public static boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public static void setReadOnly(boolean readOnly) {
+        RenderingTransaction.readOnly = readOnly;
+    }
+
+    /**
+     * @return true if rendering work is running in this thread.
+     */
+    public static boolean isRendering() {
+        return current.get() != null;
+    }
+
+    /**
+     * @return the number of writes attempted while rendering since startup.
+     */
+    public static long getWriteAttempts() {
+        return writeAttempts.get();
+    }
+
+    /**
+     * Runs the given rendering work in a read-only transaction, or in the enclosing rendering or commit transaction. With the
+     * read-only mode off the work runs directly.
+     * 
+     * @param site
+     *            describes the rendering work in the reports of attempted writes.
+     * @throws RenderingWriteException
+     *             if the work attempted to write.
+     */
+    public static void render(String site, Runnable work) throws RenderingWriteException {
+        if (!readOnly || isRendering() || CommitCoordinator.isCommitting()) {
+            work.run();
+            return;
+        }
+        renderReadOnly(site, work);
+    }
+
+    /**
+     * Like {@link #render(String, Runnable)}, but with the read-only mode off the work runs in a read-write transaction. The work
+     * may be run again when the transaction restarts.
+     */
+    public static void renderAtomically(String site, Runnable work) throws RenderingWriteException {
+        if (isRendering() || CommitCoordinator.isCommitting()) {
+            work.run();
+            return;
+        }
+        if (!readOnly) {
+            renderInWriteTransaction(work);
+            return;
+        }
+        renderReadOnly(site, work);
+    }
+
+    private static void renderReadOnly(String site, Runnable work) {
+        current.set(site);
+        try {
+            renderInTransaction(site, work);
+        } finally {
+            current.remove();
+        }
+    }
+
+    @Atomic(mode = TxMode.READ)
+    private static void renderInTransaction(String site, Runnable work) {
+        try {
+            work.run();
+        } catch (WriteOnReadError e) {
+            // a WriteOnReadError leaving this method, even as a cause, would restart the work read-write, since ServiceUtils
+            // rethrows the transaction errors found in a cause chain
+            reportWrite(e);
+            RenderingWriteException failure = new RenderingWriteException(site, null);
+            failure.setStackTrace(e.getStackTrace());
+            throw failure;
+        }
+    }
+
+    @Atomic
+    private static void renderInWriteTransaction(Runnable work) {
+        work.run();
+    }
+
+    /**
+     * Fails if called while rendering, used by the buffered commits to detect writes before they reach the domain.
+     * 
+     * @throws RenderingWriteException
+     *             if rendering work is running in this thread.
+     */
+    public static void checkNotRendering() throws RenderingWriteException {
+        String site = current.get();
+        if (site != null) {
+            RenderingWriteException e = new RenderingWriteException(site, null);
+            reportWrite(e);
+            throw e;
+        }
+    }
+
+    private static void reportWrite(Throwable write) {
+        writeAttempts.incrementAndGet();
+        VaadinFrameworkLogger.getLogger().error("Write attempted while rendering " + current.get(), write);
+    }
+}
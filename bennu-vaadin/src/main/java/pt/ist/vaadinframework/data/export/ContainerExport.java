@@ -0,0 +1,287 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.data.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import pt.ist.fenixframework.DomainObject;
+import pt.ist.vaadinframework.data.AbstractBufferedContainer;
+import pt.ist.vaadinframework.data.RenderingTransaction;
+import pt.ist.vaadinframework.data.metamodel.MetaModel;
+import pt.ist.vaadinframework.data.metamodel.PropertyDescriptor;
+
+import com.vaadin.Application;
+import com.vaadin.data.Container;
+import com.vaadin.data.Property;
+import com.vaadin.terminal.StreamResource;
+import com.vaadin.terminal.StreamResource.StreamSource;
+
+/**
+ * Streams the visible rows of a {@link Container.Indexed}, in its current order and filtering, as a CSV or XLSX file. The ids
+ * of the visible rows are copied when the stream is opened, which happens while the application is locked. Rows are produced
+ * as the download is read, outside that lock, {@link #CHUNK_SIZE} at a time in a {@link RenderingTransaction}, so apart from
+ * the ids memory stays constant whatever the size of the container.
+ * 
+ * Rows whose item id is a {@link DomainObject}, as in {@link AbstractBufferedContainer}s of domain objects, are read directly
+ * through the {@link MetaModel} accessors, following dotted property paths, without creating the buffered items. Buffered
+ * changes not yet committed are therefore not exported. Other rows, and properties that are not in the meta model, are read
+ * through {@link Container#getContainerProperty(Object, Object)}, locking the application given to
+ * {@link #createResource(String, Application)}.
+ */
+@SuppressWarnings("serial")
+public class ContainerExport implements StreamSource {
+    public static final int CHUNK_SIZE = 500;
+
+    private static final PropertyDescriptor[] NOT_IN_MODEL = new PropertyDescriptor[0];
+
+    private final Container.Indexed container;
+
+    private final Object[] propertyIds;
+
+    private final String[] headers;
+
+    private final ExportFormat format;
+
+    private final Map<Class<?>, PropertyDescriptor[][]> accessors = new ConcurrentHashMap<Class<?>, PropertyDescriptor[][]>();
+
+    private volatile Application application;
+
+    /**
+     * @param propertyIds
+     *            the exported columns, in order.
+     * @param headers
+     *            the header row, or null to use the property ids, null headers also default to their property id.
+     */
+    public ContainerExport(Container.Indexed container, Object[] propertyIds, String[] headers, ExportFormat format) {
+        if (headers != null && headers.length != propertyIds.length) {
+            throw new IllegalArgumentException("Expected " + propertyIds.length + " headers, got " + headers.length);
+        }
+        this.container = container;
+        this.propertyIds = propertyIds.clone();
+        this.headers = new String[propertyIds.length];
+        for (int i = 0; i < propertyIds.length; i++) {
+            this.headers[i] = headers != null && headers[i] != null ? headers[i] : String.valueOf(propertyIds[i]);
+        }
+        this.format = format;
+    }
+
+    public ExportFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return a new stream that exports the rows visible in the container at this moment.
+     */
+    @Override
+    public InputStream getStream() {
+        return new ExportStream();
+    }
+
+    /**
+     * @param baseName
+     *            the name of the downloaded file, without extension.
+     * @return a resource that streams this export when opened.
+     */
+    public StreamResource createResource(String baseName, Application application) {
+        this.application = application;
+        StreamResource resource = new StreamResource(this, baseName + "." + format.getExtension(), application);
+        resource.setMIMEType(format.getMimeType());
+        resource.setCacheTime(0);
+        return resource;
+    }
+
+    /**
+     * Override to convert values before they are written, numbers and booleans are written as such and any other value as
+     * its {@link Object#toString()}.
+     */
+    protected Object formatValue(Object propertyId, Object value) {
+        return value;
+    }
+
+    private Object read(Object itemId, int column) {
+        if (itemId instanceof DomainObject) {
+            PropertyDescriptor[] path = getAccessors(itemId.getClass())[column];
+            if (path != NOT_IN_MODEL) {
+                Object value = itemId;
+                for (int i = 0; i < path.length && value != null; i++) {
+                    value = path[i].read(value);
+                }
+                return value;
+            }
+        }
+        Application lock = application;
+        if (lock == null) {
+            return readFromContainer(itemId, column);
+        }
+        synchronized (lock) {
+            return readFromContainer(itemId, column);
+        }
+    }
+
+    private Object readFromContainer(Object itemId, int column) {
+        Property property = container.getContainerProperty(itemId, propertyIds[column]);
+        return property != null ? property.getValue() : null;
+    }
+
+    private PropertyDescriptor[][] getAccessors(Class<?> type) {
+        PropertyDescriptor[][] typeAccessors = accessors.get(type);
+        if (typeAccessors == null) {
+            typeAccessors = new PropertyDescriptor[propertyIds.length][];
+            for (int i = 0; i < propertyIds.length; i++) {
+                typeAccessors[i] = propertyIds[i] instanceof String ? resolve(type, (String) propertyIds[i]) : NOT_IN_MODEL;
+            }
+            accessors.put(type, typeAccessors);
+        }
+        return typeAccessors;
+    }
+
+    private static PropertyDescriptor[] resolve(Class<?> type, String propertyId) {
+        String[] segments = propertyId.split("\\.");
+        PropertyDescriptor[] path = new PropertyDescriptor[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            if (type == null || !DomainObject.class.isAssignableFrom(type)) {
+                return NOT_IN_MODEL;
+            }
+            MetaModel model = MetaModel.findMetaModelForType((Class<? extends DomainObject>) type);
+            if (!model.getPropertyIds().contains(segments[i])) {
+                return NOT_IN_MODEL;
+            }
+            path[i] = model.getPropertyDescriptor(segments[i]);
+            if (path[i].isCollection() && i < segments.length - 1) {
+                return NOT_IN_MODEL;
+            }
+            type = path[i].getPropertyType();
+        }
+        return path;
+    }
+
+    /**
+     * Byte buffer whose content is read in place.
+     */
+    private static class ChunkBuffer extends ByteArrayOutputStream {
+        public ChunkBuffer() {
+            super(64 * 1024);
+        }
+
+        public byte[] getBytes() {
+            return buf;
+        }
+    }
+
+    private class ExportStream extends InputStream {
+        private final List<Object> itemIds = new ArrayList<Object>(container.getItemIds());
+
+        private final ChunkBuffer buffer = new ChunkBuffer();
+
+        private RowWriter writer;
+
+        private int nextRow = 0;
+
+        private int position = 0;
+
+        private boolean finished = false;
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            return buffer.getBytes()[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.size() - position);
+            System.arraycopy(buffer.getBytes(), position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.size() - position;
+        }
+
+        private boolean ensureAvailable() throws IOException {
+            while (position == buffer.size()) {
+                if (finished) {
+                    return false;
+                }
+                buffer.reset();
+                position = 0;
+                writeChunk();
+            }
+            return true;
+        }
+
+        private void writeChunk() throws IOException {
+            final IOException[] failure = new IOException[1];
+            RenderingTransaction.render("export:" + format, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        writeRows();
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+
+        private void writeRows() throws IOException {
+            if (writer == null) {
+                writer = format.newWriter(buffer);
+                writer.begin(headers);
+            }
+            int end = Math.min(nextRow + CHUNK_SIZE, itemIds.size());
+            Object[] values = new Object[propertyIds.length];
+            for (; nextRow < end; nextRow++) {
+                Object itemId = itemIds.get(nextRow);
+                for (int i = 0; i < propertyIds.length; i++) {
+                    values[i] = formatValue(propertyIds[i], read(itemId, i));
+                }
+                writer.row(values);
+            }
+            if (nextRow >= itemIds.size()) {
+                writer.end();
+                finished = true;
+            } else {
+                writer.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.data.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * RFC 4180 CSV, UTF-8 encoded with a byte order mark so that spreadsheet applications detect the encoding. Text that a
+ * spreadsheet would evaluate as a formula, starting with one of {@link #FORMULA_TRIGGERS}, is prefixed with an apostrophe so
+ * that it is shown as text, numbers are written as they are.
+ */
+class CsvRowWriter extends RowWriter {
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+    private static final char SEPARATOR = ',';
+
+    private static final String LINE_END = "\r\n";
+
+    private static final String FORMULA_TRIGGERS = "=+-@\t\r";
+
+    public CsvRowWriter(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void begin(String[] headers) throws IOException {
+        out.write(BYTE_ORDER_MARK);
+        row(headers);
+    }
+
+    @Override
+    public void row(Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                out.write(SEPARATOR);
+            }
+            if (values[i] instanceof Number) {
+                out.write(values[i].toString());
+            } else if (values[i] != null) {
+                writeField(values[i].toString());
+            }
+        }
+        out.write(LINE_END);
+    }
+
+    private void writeField(String field) throws IOException {
+        if (!field.isEmpty() && FORMULA_TRIGGERS.indexOf(field.charAt(0)) >= 0) {
+            field = "'" + field;
+        }
+        boolean quote = false;
+        for (int i = 0; i < field.length() && !quote; i++) {
+            char c = field.charAt(i);
+            quote = c == SEPARATOR || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            out.write(field);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+    @Override
+    public void end() throws IOException {
+        out.close();
+    }
+}
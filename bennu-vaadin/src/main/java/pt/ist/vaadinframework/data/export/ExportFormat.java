@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.data.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * File formats {@link ContainerExport} can write.
+ */
+public enum ExportFormat {
+    CSV("text/csv", "csv") {
+        @Override
+        RowWriter newWriter(OutputStream out) throws IOException {
+            return new CsvRowWriter(out);
+        }
+    },
+    XLSX("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx") {
+        @Override
+        RowWriter newWriter(OutputStream out) throws IOException {
+            return new XlsxRowWriter(out);
+        }
+    };
+
+    private final String mimeType;
+
+    private final String extension;
+
+    private ExportFormat(String mimeType, String extension) {
+        this.mimeType = mimeType;
+        this.extension = extension;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    abstract RowWriter newWriter(OutputStream out) throws IOException;
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.data.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Writes the rows of an export one at a time, keeping no state besides the encoder buffers.
+ */
+abstract class RowWriter {
+    protected static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    protected Writer out;
+
+    protected RowWriter(OutputStream out) {
+        this.out = new OutputStreamWriter(out, UTF_8);
+    }
+
+    public abstract void begin(String[] headers) throws IOException;
+
+    public abstract void row(Object[] values) throws IOException;
+
+    /**
+     * Writes the end of the file and closes the underlying stream.
+     */
+    public abstract void end() throws IOException;
+
+    /**
+     * Pushes the rows written so far to the underlying stream.
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.data.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Single sheet Office Open XML workbook. The package parts that do not depend on the data are written first and the sheet is
+ * the last zip entry, written a row at a time with inline strings so that no shared string table has to be kept in memory.
+ */
+class XlsxRowWriter extends RowWriter {
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+    private static final String RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+
+    private static final String DOCUMENT_RELATIONSHIPS_NS =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private static final String SPREADSHEET_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+    private static final String CONTENT_TYPES = XML_HEADER
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Override PartName=\"/xl/workbook.xml\""
+            + " ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+            + "<Override PartName=\"/xl/worksheets/sheet1.xml\""
+            + " ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>" + "</Types>";
+
+    private static final String ROOT_RELATIONSHIPS = XML_HEADER + "<Relationships xmlns=\"" + RELATIONSHIPS_NS + "\">"
+            + "<Relationship Id=\"rId1\" Type=\"" + DOCUMENT_RELATIONSHIPS_NS + "/officeDocument\" Target=\"xl/workbook.xml\"/>"
+            + "</Relationships>";
+
+    private static final String WORKBOOK = XML_HEADER + "<workbook xmlns=\"" + SPREADSHEET_NS + "\" xmlns:r=\""
+            + DOCUMENT_RELATIONSHIPS_NS + "\"><sheets><sheet name=\"Sheet1\" sheetId=\"1\" r:id=\"rId1\"/></sheets></workbook>";
+
+    private static final String WORKBOOK_RELATIONSHIPS = XML_HEADER + "<Relationships xmlns=\"" + RELATIONSHIPS_NS + "\">"
+            + "<Relationship Id=\"rId1\" Type=\"" + DOCUMENT_RELATIONSHIPS_NS
+            + "/worksheet\" Target=\"worksheets/sheet1.xml\"/></Relationships>";
+
+    private final ZipOutputStream zip;
+
+    private int rowNumber = 0;
+
+    public XlsxRowWriter(OutputStream out) throws IOException {
+        this(new ZipOutputStream(out));
+    }
+
+    private XlsxRowWriter(ZipOutputStream zip) throws IOException {
+        super(zip);
+        this.zip = zip;
+        writeEntry("[Content_Types].xml", CONTENT_TYPES);
+        writeEntry("_rels/.rels", ROOT_RELATIONSHIPS);
+        writeEntry("xl/workbook.xml", WORKBOOK);
+        writeEntry("xl/_rels/workbook.xml.rels", WORKBOOK_RELATIONSHIPS);
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet1.xml"));
+    }
+
+    private void writeEntry(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        out.write(content);
+        out.flush();
+        zip.closeEntry();
+    }
+
+    @Override
+    public void begin(String[] headers) throws IOException {
+        out.write(XML_HEADER);
+        out.write("<worksheet xmlns=\"" + SPREADSHEET_NS + "\"><sheetData>");
+        row(headers);
+    }
+
+    @Override
+    public void row(Object[] values) throws IOException {
+        rowNumber++;
+        out.write("<row r=\"");
+        out.write(Integer.toString(rowNumber));
+        out.write("\">");
+        for (Object value : values) {
+            if (value == null) {
+                out.write("<c/>");
+            } else if (value instanceof Number && isFinite((Number) value)) {
+                out.write("<c><v>");
+                out.write(value.toString());
+                out.write("</v></c>");
+            } else if (value instanceof Boolean) {
+                out.write("<c t=\"b\"><v>");
+                out.write((Boolean) value ? "1" : "0");
+                out.write("</v></c>");
+            } else {
+                out.write("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+                writeEscaped(value.toString());
+                out.write("</t></is></c>");
+            }
+        }
+        out.write("</row>");
+    }
+
+    private static boolean isFinite(Number number) {
+        return !(number instanceof Double || number instanceof Float) || !(Double.isNaN(number.doubleValue())
+                || Double.isInfinite(number.doubleValue()));
+    }
+
+    private void writeEscaped(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '<':
+                out.write("&lt;");
+                break;
+            case '>':
+                out.write("&gt;");
+                break;
+            case '&':
+                out.write("&amp;");
+                break;
+            case '"':
+                out.write("&quot;");
+                break;
+            default:
+                // control characters other than tab and line ends are not allowed in XML 1.0
+                if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                    out.write(c);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void end() throws IOException {
+        out.write("</sheetData></worksheet>");
+        out.flush();
+        zip.closeEntry();
+        zip.close();
+    }
+}
@@ -32,6 +32,7 @@ import org.apache.commons.lang.WordUtils;
 
 import pt.ist.fenixframework.DomainObject;
 import pt.ist.fenixframework.dml.Role;
+import pt.ist.vaadinframework.data.util.RelationDelta;
 
 import com.vaadin.data.Property.ConversionException;
 
@@ -157,9 +158,8 @@ public class RolePropertyDescriptor implements PropertyDescriptor {
             if (writer != null) {
                 writer.invoke(host, newValue);
             } else {
-                Set<?> set = (Set<?>) reader.invoke(host);
-                set.clear();
-                set.addAll((Collection) newValue);
+                RelationDelta.write(type.getSimpleName() + "." + propertyId, (Set<?>) reader.invoke(host),
+                        (Collection<?>) newValue);
             }
         } catch (IllegalArgumentException e) {
             throw new ConversionException(e);
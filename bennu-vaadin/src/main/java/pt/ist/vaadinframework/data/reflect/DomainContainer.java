@@ -23,7 +23,12 @@ package pt.ist.vaadinframework.data.reflect;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
@@ -35,14 +40,38 @@ import pt.ist.fenixframework.plugins.luceneIndexing.queryBuilder.dsl.DSLState;
 import pt.ist.vaadinframework.VaadinFrameworkLogger;
 import pt.ist.vaadinframework.data.AbstractBufferedContainer;
 import pt.ist.vaadinframework.data.LuceneContainer;
+import pt.ist.vaadinframework.data.RenderingTransaction;
 import pt.ist.vaadinframework.data.metamodel.MetaModel;
 import pt.ist.vaadinframework.data.metamodel.PropertyDescriptor;
+import pt.ist.vaadinframework.instrumentation.PageInstrumentation;
 
 import com.vaadin.data.Property;
 import com.vaadin.data.util.ItemSorter;
 
 public class DomainContainer<Type extends DomainObject> extends AbstractBufferedContainer<Type, Object, DomainItem<Type>>
         implements LuceneContainer {
+    /**
+     * Tree of the dotted property paths to prefetch, one node per path segment.
+     */
+    private static class PrefetchPath {
+        private final Map<String, PrefetchPath> children = new LinkedHashMap<String, PrefetchPath>();
+
+        public void add(String path) {
+            int split = path.indexOf('.');
+            String segment = split == -1 ? path : path.substring(0, split);
+            PrefetchPath child = children.get(segment);
+            if (child == null) {
+                child = new PrefetchPath();
+                children.put(segment, child);
+            }
+            if (split != -1) {
+                child.add(path.substring(split + 1));
+            }
+        }
+    }
+
+    private static volatile PrefetchLoader prefetchLoader;
+
     private final int maxHits = 1000000;
 
     public DomainContainer(Property wrapped, Class<? extends Type> elementType, Hint... hints) {
@@ -80,13 +109,23 @@ public class DomainContainer<Type extends DomainObject> extends AbstractBuffered
         super.setItemSorter(itemSorter);
     }
 
+    /**
+     * Only the index lookup runs in a {@link RenderingTransaction}, replacing the items writes to the domain when the container
+     * is write-through.
+     */
     @Override
     public void search(String filterText) {
-        removeAllItems();
         final DSLState expr = createFilterExpression(filterText);
         DateTime start = new DateTime();
-        final List<Type> searchResult = (List<Type>) DomainIndexer.getInstance().search(getElementType(), expr, maxHits);
+        final List<Type> searchResult = new ArrayList<Type>();
+        RenderingTransaction.render("search:" + getElementType(), new Runnable() {
+            @Override
+            public void run() {
+                searchResult.addAll((List<Type>) DomainIndexer.getInstance().search(getElementType(), expr, maxHits));
+            }
+        });
         DateTime check1 = new DateTime();
+        removeAllItems();
         addItemBatch(searchResult);
         DateTime check2 = new DateTime();
         VaadinFrameworkLogger.getLogger().debug(
@@ -94,6 +133,101 @@ public class DomainContainer<Type extends DomainObject> extends AbstractBuffered
                         + new Interval(check1, check2).toDuration() + "(" + new Interval(start, check2).toDuration() + ")");
     }
 
+    /**
+     * Loads, through the installed {@link PrefetchLoader} and in a single {@link RenderingTransaction}, the given items and the
+     * objects reached from them by the given properties, following dotted paths, so that the cells rendered next find them
+     * loaded. The objects are loaded one level of the object graph at a time, with one call to the loader per level and
+     * relation, and only the relations are read to find the next level. Property ids that are not in the meta model of the
+     * element type, like generated columns, are ignored. Without a loader nothing is done, since reading the objects one by one
+     * ahead of the rendering would not save any backend call.
+     * 
+     * @return the number of backend calls made by the loader, also reported to the {@link PageInstrumentation} sample of the
+     *         request.
+     */
+    public int prefetch(final Collection<?> itemIds, Collection<?> propertyIds) {
+        final PrefetchLoader loader = prefetchLoader;
+        if (loader == null) {
+            return 0;
+        }
+        final PrefetchPath root = new PrefetchPath();
+        for (Object propertyId : propertyIds) {
+            if (propertyId instanceof String) {
+                root.add((String) propertyId);
+            }
+        }
+        final Set<DomainObject> hosts = new LinkedHashSet<DomainObject>();
+        for (Object itemId : itemIds) {
+            if (itemId instanceof DomainObject) {
+                hosts.add((DomainObject) itemId);
+            }
+        }
+        if (hosts.isEmpty() || root.children.isEmpty()) {
+            return 0;
+        }
+        final int[] calls = new int[1];
+        RenderingTransaction.render("prefetch:" + getElementType(), new Runnable() {
+            @Override
+            public void run() {
+                calls[0] = loader.load(hosts);
+                calls[0] += prefetch(loader, getElementType(), hosts, root);
+            }
+        });
+        PageInstrumentation.prefetched(calls[0]);
+        return calls[0];
+    }
+
+    /**
+     * Follows the relations of the given loaded hosts, loading the related objects of each relation together.
+     * 
+     * @return the number of backend calls made.
+     */
+    private static int prefetch(PrefetchLoader loader, Class<? extends DomainObject> type, Set<DomainObject> hosts,
+            PrefetchPath path) {
+        MetaModel model = MetaModel.findMetaModelForType(type);
+        int calls = 0;
+        for (Entry<String, PrefetchPath> entry : path.children.entrySet()) {
+            if (!model.getPropertyIds().contains(entry.getKey())) {
+                continue;
+            }
+            PropertyDescriptor descriptor = model.getPropertyDescriptor(entry.getKey());
+            Class<?> targetType =
+                    descriptor.isCollection() ? descriptor.getCollectionElementType() : descriptor.getPropertyType();
+            if (targetType == null || !DomainObject.class.isAssignableFrom(targetType)) {
+                // a plain slot, loaded with its host
+                continue;
+            }
+            Set<DomainObject> next = new LinkedHashSet<DomainObject>();
+            for (DomainObject host : hosts) {
+                Object value = descriptor.read(host);
+                if (value instanceof DomainObject) {
+                    next.add((DomainObject) value);
+                } else if (value instanceof Collection) {
+                    for (Object element : (Collection<?>) value) {
+                        if (element instanceof DomainObject) {
+                            next.add((DomainObject) element);
+                        }
+                    }
+                }
+            }
+            if (!next.isEmpty()) {
+                calls += loader.load(next);
+                calls += prefetch(loader, (Class<? extends DomainObject>) targetType, next, entry.getValue());
+            }
+        }
+        return calls;
+    }
+
+    public static PrefetchLoader getPrefetchLoader() {
+        return prefetchLoader;
+    }
+
+    /**
+     * Installs the loader used by {@link #prefetch(Collection, Collection)}, null turns prefetching off.
+     */
+    public static void setPrefetchLoader(PrefetchLoader loader) {
+        prefetchLoader = loader;
+    }
+
     protected DSLState createFilterExpression(String filterText) {
         return new BuildingState().matches(filterText);
     }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.data.reflect;
+
+import java.util.Collection;
+
+import pt.ist.fenixframework.DomainObject;
+
+/**
+ * Loads the state of many domain objects from the backend together, used by {@link DomainContainer#prefetch} to load each
+ * level of the rendered object graph at once. Implementations depend on the backend, none is installed by default.
+ */
+public interface PrefetchLoader {
+    /**
+     * Loads the given objects, whose state may or may not be loaded already.
+     * 
+     * @return the number of backend calls made.
+     */
+    public int load(Collection<DomainObject> objects);
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.data.util;
+
+import java.text.Collator;
+import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.joda.time.ReadableInstant;
+
+/**
+ * Multi-column sort over values extracted once per item. Each column is converted into a compact key array: {@code long}s for
+ * integral numbers and instants, {@code double}s for floating point numbers, collation keys for strings when a
+ * {@link Collator} is given and the values themselves otherwise. The sort only compares array slots and reports the resulting
+ * permutation, so the caller reorders its items in a single pass.
+ * 
+ * The ordering matches {@link com.vaadin.data.util.DefaultItemSorter}: values compare by their natural order, nulls come first
+ * and descending columns reverse the whole comparison. The sort is stable, and inputs above {@link #PARALLEL_THRESHOLD} are
+ * sorted in parallel.
+ */
+public class ExtractedKeySorter {
+    public static final int PARALLEL_THRESHOLD = 10000;
+
+    private static final int SEQUENTIAL_CUTOFF = 4096;
+
+    private static final int INSERTION_CUTOFF = 32;
+
+    private static ForkJoinPool pool;
+
+    private abstract static class Key {
+        private final boolean[] nulls;
+
+        private final boolean ascending;
+
+        public Key(boolean[] nulls, boolean ascending) {
+            this.nulls = nulls;
+            this.ascending = ascending;
+        }
+
+        public int compare(int i, int j) {
+            int result;
+            if (nulls != null && (nulls[i] || nulls[j])) {
+                result = nulls[i] == nulls[j] ? 0 : nulls[i] ? -1 : 1;
+            } else {
+                result = compareValues(i, j);
+            }
+            return ascending ? result : -result;
+        }
+
+        protected abstract int compareValues(int i, int j);
+    }
+
+    private static class LongKey extends Key {
+        private final long[] values;
+
+        public LongKey(long[] values, boolean[] nulls, boolean ascending) {
+            super(nulls, ascending);
+            this.values = values;
+        }
+
+        @Override
+        protected int compareValues(int i, int j) {
+            return values[i] < values[j] ? -1 : values[i] == values[j] ? 0 : 1;
+        }
+    }
+
+    private static class DoubleKey extends Key {
+        private final double[] values;
+
+        public DoubleKey(double[] values, boolean[] nulls, boolean ascending) {
+            super(nulls, ascending);
+            this.values = values;
+        }
+
+        @Override
+        protected int compareValues(int i, int j) {
+            return Double.compare(values[i], values[j]);
+        }
+    }
+
+    private static class ComparableKey extends Key {
+        private final Comparable<Object>[] values;
+
+        public ComparableKey(Comparable<Object>[] values, boolean[] nulls, boolean ascending) {
+            super(nulls, ascending);
+            this.values = values;
+        }
+
+        @Override
+        protected int compareValues(int i, int j) {
+            return values[i].compareTo(values[j]);
+        }
+    }
+
+    private class SortTask extends RecursiveAction {
+        private final int[] order;
+
+        private final int[] buffer;
+
+        private final int from;
+
+        private final int to;
+
+        public SortTask(int[] order, int[] buffer, int from, int to) {
+            this.order = order;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_CUTOFF) {
+                mergeSort(order, buffer, from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SortTask(order, buffer, from, middle), new SortTask(order, buffer, middle, to));
+                merge(order, buffer, from, middle, to);
+            }
+        }
+    }
+
+    private final Key[] keys;
+
+    private final int size;
+
+    /**
+     * @param values
+     *            the extracted values, one array per sort column with one slot per item.
+     * @param ascending
+     *            the direction of each sort column.
+     * @param collator
+     *            the collator for string columns, or null to compare strings by their natural order.
+     * @throws ClassCastException
+     *             if the values of a column are not mutually comparable.
+     */
+    public ExtractedKeySorter(Object[][] values, boolean[] ascending, Collator collator) {
+        this.keys = new Key[values.length];
+        this.size = values.length > 0 ? values[0].length : 0;
+        for (int column = 0; column < values.length; column++) {
+            keys[column] = makeKey(values[column], column < ascending.length ? ascending[column] : true, collator);
+        }
+    }
+
+    private static Key makeKey(Object[] column, boolean ascending, Collator collator) {
+        boolean[] nulls = null;
+        boolean integral = true;
+        boolean floating = true;
+        boolean instant = true;
+        boolean string = true;
+        for (int i = 0; i < column.length; i++) {
+            Object value = column[i];
+            if (value == null) {
+                if (nulls == null) {
+                    nulls = new boolean[column.length];
+                }
+                nulls[i] = true;
+            } else {
+                integral &= value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+                floating &= value instanceof Double || value instanceof Float;
+                instant &= value.getClass() == Date.class || value instanceof ReadableInstant;
+                string &= value instanceof String;
+            }
+        }
+        if (integral || instant) {
+            long[] keys = new long[column.length];
+            for (int i = 0; i < column.length; i++) {
+                Object value = column[i];
+                if (value instanceof Number) {
+                    keys[i] = ((Number) value).longValue();
+                } else if (value instanceof Date) {
+                    keys[i] = ((Date) value).getTime();
+                } else if (value != null) {
+                    keys[i] = ((ReadableInstant) value).getMillis();
+                }
+            }
+            return new LongKey(keys, nulls, ascending);
+        }
+        if (floating) {
+            double[] keys = new double[column.length];
+            for (int i = 0; i < column.length; i++) {
+                if (column[i] != null) {
+                    keys[i] = ((Number) column[i]).doubleValue();
+                }
+            }
+            return new DoubleKey(keys, nulls, ascending);
+        }
+        Comparable<Object>[] keys = new Comparable[column.length];
+        for (int i = 0; i < column.length; i++) {
+            if (string && collator != null && column[i] != null) {
+                keys[i] = (Comparable) collator.getCollationKey((String) column[i]);
+            } else {
+                keys[i] = (Comparable<Object>) column[i];
+            }
+        }
+        return new ComparableKey(keys, nulls, ascending);
+    }
+
+    /**
+     * @return the sorted permutation: position {@code i} of the result holds the index of the item that goes to position
+     *         {@code i}.
+     */
+    public int[] sort() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        if (keys.length == 0 || size < 2) {
+            return order;
+        }
+        int[] buffer = new int[size];
+        if (size > PARALLEL_THRESHOLD && Runtime.getRuntime().availableProcessors() > 1) {
+            getPool().invoke(new SortTask(order, buffer, 0, size));
+        } else {
+            mergeSort(order, buffer, 0, size);
+        }
+        return order;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+
+    private int compare(int i, int j) {
+        for (Key key : keys) {
+            int result = key.compare(i, j);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private void mergeSort(int[] order, int[] buffer, int from, int to) {
+        if (to - from <= INSERTION_CUTOFF) {
+            for (int i = from + 1; i < to; i++) {
+                int current = order[i];
+                int j = i - 1;
+                while (j >= from && compare(order[j], current) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = current;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(order, buffer, from, middle);
+        mergeSort(order, buffer, middle, to);
+        merge(order, buffer, from, middle, to);
+    }
+
+    private void merge(int[] order, int[] buffer, int from, int middle, int to) {
+        if (compare(order[middle - 1], order[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || left < middle && compare(buffer[left], buffer[right]) <= 0) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+}
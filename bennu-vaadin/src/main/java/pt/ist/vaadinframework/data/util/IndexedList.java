@@ -0,0 +1,209 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.data.util;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Array backed list with a hash index from element to position, making {@link #contains(Object)} and {@link #indexOf(Object)}
+ * constant time. Appends and removals at the tail update the index in place. Any other structural change or replacement at a
+ * position only marks the index stale from that position on: lookups of elements before it are still answered by the index,
+ * and the first lookup that lands past it reindexes the tail once. Like {@link ArrayList#indexOf(Object)}, lookups report the
+ * first occurrence of duplicated elements.
+ */
+public class IndexedList<E> extends AbstractList<E> implements RandomAccess, Serializable {
+    private final ArrayList<E> elements;
+
+    /**
+     * The first occurrence of each element. Entries below {@link #validBelow} are exact for the elements still in the list,
+     * entries of removed elements may linger and are discarded when a lookup finds a different element at their position.
+     */
+    private transient HashMap<Object, Integer> positions;
+
+    /**
+     * The number of leading elements whose positions are up to date.
+     */
+    private transient int validBelow;
+
+    public IndexedList() {
+        elements = new ArrayList<E>();
+    }
+
+    public IndexedList(Collection<? extends E> elements) {
+        this.elements = new ArrayList<E>(elements);
+    }
+
+    @Override
+    public E get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public boolean add(E element) {
+        int index = elements.size();
+        elements.add(element);
+        modCount++;
+        if (positions != null && validBelow == index) {
+            Integer position = positions.get(element);
+            if (position == null || !isAt(element, position)) {
+                positions.put(element, index);
+            }
+            validBelow = index + 1;
+        }
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if (index == elements.size()) {
+            add(element);
+        } else {
+            elements.add(index, element);
+            modCount++;
+            invalidateFrom(index);
+        }
+    }
+
+    @Override
+    public E set(int index, E element) {
+        E previous = elements.set(index, element);
+        if (previous != element) {
+            invalidateFrom(index);
+        }
+        return previous;
+    }
+
+    @Override
+    public E remove(int index) {
+        int last = elements.size() - 1;
+        E removed = elements.remove(index);
+        modCount++;
+        if (positions != null) {
+            if (index == last && validBelow > last) {
+                Integer position = positions.get(removed);
+                if (position != null && position == index) {
+                    positions.remove(removed);
+                }
+            }
+            invalidateFrom(index);
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        int index = indexOf(element);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        elements.clear();
+        modCount++;
+        positions = null;
+    }
+
+    @Override
+    public int indexOf(Object element) {
+        if (positions == null) {
+            positions = new HashMap<Object, Integer>(Math.max(16, elements.size() * 4 / 3 + 1));
+            validBelow = 0;
+        }
+        Integer position = positions.get(element);
+        if (position != null && position < validBelow && isAt(element, position)) {
+            return position;
+        }
+        if (validBelow < elements.size()) {
+            reindexTail();
+            position = positions.get(element);
+        }
+        if (position == null) {
+            return -1;
+        }
+        if (!isAt(element, position)) {
+            positions.remove(element);
+            return -1;
+        }
+        return position;
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return indexOf(element) >= 0;
+    }
+
+    private void invalidateFrom(int index) {
+        if (index < validBelow) {
+            validBelow = index;
+        }
+    }
+
+    private boolean isAt(Object element, int position) {
+        if (position >= elements.size()) {
+            return false;
+        }
+        Object current = elements.get(position);
+        return element == null ? current == null : element.equals(current);
+    }
+
+    /**
+     * Indexes the elements from {@link #validBelow} on, backwards so the first occurrence in the tail wins, unless the element
+     * already occurs before the tail. The index is rebuilt from scratch when lingering entries of removed elements outnumber
+     * the elements.
+     */
+    private void reindexTail() {
+        if (positions.size() > 2 * elements.size() + 16) {
+            positions.clear();
+            validBelow = 0;
+        }
+        for (int i = elements.size() - 1; i >= validBelow; i--) {
+            E element = elements.get(i);
+            Integer position = positions.get(element);
+            if (position == null || position >= validBelow || !isAt(element, position)) {
+                positions.put(element, i);
+            }
+        }
+        validBelow = elements.size();
+    }
+
+    /**
+     * @return a copy of the given list that indexes its elements, or the list itself if it already does.
+     */
+    public static <E> List<E> of(List<E> list) {
+        return list instanceof IndexedList ? list : new IndexedList<E>(list);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.data.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import pt.ist.vaadinframework.VaadinFrameworkLogger;
+import pt.ist.vaadinframework.instrumentation.CommitInstrumentation;
+
+/**
+ * Writes a new value to a to-many relation by removing and adding only the elements that changed, instead of clearing the
+ * relation and adding every element back. Unchanged links stay out of the transaction write set, do not conflict with
+ * concurrent writers and do not fire relation listeners.
+ */
+public class RelationDelta {
+    private final List<Object> removed;
+
+    private final List<Object> added;
+
+    private RelationDelta(List<Object> removed, List<Object> added) {
+        this.removed = removed;
+        this.added = added;
+    }
+
+    /**
+     * Brings the relation to the given value. Removals are applied before additions, as a clear followed by an add all would.
+     * 
+     * @param relation
+     *            a description of the relation, used to report the write.
+     * @param set
+     *            the relation set.
+     * @param newValue
+     *            the elements the relation must hold, null meaning none.
+     * @return the changes applied.
+     */
+    public static RelationDelta write(String relation, Set<?> set, Collection<?> newValue) {
+        Set<Object> target = newValue != null ? new LinkedHashSet<Object>(newValue) : new LinkedHashSet<Object>();
+        Set<Object> current = new HashSet<Object>(set);
+
+        List<Object> removed = new ArrayList<Object>();
+        for (Object element : current) {
+            if (!target.contains(element)) {
+                removed.add(element);
+            }
+        }
+        List<Object> added = new ArrayList<Object>();
+        for (Object element : target) {
+            if (!current.contains(element)) {
+                added.add(element);
+            }
+        }
+
+        Set<Object> relationSet = (Set<Object>) set;
+        for (Object element : removed) {
+            relationSet.remove(element);
+        }
+        for (Object element : added) {
+            relationSet.add(element);
+        }
+
+        RelationDelta delta = new RelationDelta(removed, added);
+        CommitInstrumentation.wrote(delta.getWriteSetSize());
+        if (VaadinFrameworkLogger.getLogger().isDebugEnabled()) {
+            VaadinFrameworkLogger.getLogger().debug(
+                    "relation " + relation + " written: " + removed.size() + " removed, " + added.size() + " added, "
+                            + (current.size() - removed.size()) + " unchanged");
+        }
+        return delta;
+    }
+
+    public List<Object> getRemoved() {
+        return removed;
+    }
+
+    public List<Object> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return the number of links written, which is what a clear and add all would have written in full.
+     */
+    public int getWriteSetSize() {
+        return removed.size() + added.size();
+    }
+
+    public boolean isEmpty() {
+        return removed.isEmpty() && added.isEmpty();
+    }
+}
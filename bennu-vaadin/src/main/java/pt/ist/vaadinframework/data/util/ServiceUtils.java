@@ -24,8 +24,8 @@ package pt.ist.vaadinframework.data.util;
 import jvstm.cps.ConsistencyException;
 import pt.ist.fenixframework.core.TransactionError;
 import pt.ist.fenixframework.core.WriteOnReadError;
-
-import com.vaadin.data.Buffered;
+import pt.ist.vaadinframework.instrumentation.CommitInstrumentation;
+import pt.ist.vaadinframework.terminal.ThrowableAnalysis;
 
 /**
  * @author Pedro Santos (pedro.miguel.santos@ist.utl.pt)
@@ -35,18 +35,14 @@ public class ServiceUtils {
     public static void handleException(Throwable throwable) {
         // This is a little hackish but is somewhat forced by the
         // combination of architectures of both vaadin and the jvstm
-        if (throwable instanceof WriteOnReadError) {
-            throw (WriteOnReadError) throwable;
-        } else if (throwable instanceof ConsistencyException) {
-            throw (ConsistencyException) throwable;
-        } else if (throwable instanceof TransactionError) {
-            throw (TransactionError) throwable;
-        } else if (throwable instanceof Buffered.SourceException) {
-            for (Throwable cause : ((Buffered.SourceException) throwable).getCauses()) {
-                handleException(cause);
-            }
-        } else if (throwable.getCause() != null) {
-            handleException(throwable.getCause());
+        final Throwable transactionError = ThrowableAnalysis.of(throwable).getTransactionError();
+        if (transactionError instanceof WriteOnReadError) {
+            CommitInstrumentation.restarting(transactionError);
+            throw (WriteOnReadError) transactionError;
+        } else if (transactionError instanceof ConsistencyException) {
+            throw (ConsistencyException) transactionError;
+        } else if (transactionError instanceof TransactionError) {
+            throw (TransactionError) transactionError;
         }
     }
 }
@@ -27,8 +27,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.TreeMap;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -45,17 +44,23 @@ public class FragmentQuery implements Serializable {
 
     Map<String, String> params;
 
-    private void setParams(String query) {
-        final String[] args = query.split("&");
-        for (String param : args) {
-            final String[] split = param.split("=");
-            if (split.length == 2) {
-                String name = split[0];
-                String value = split[1];
-                put(name, value);
-            } else {
-                throw new InvalidFragmentException(query);
+    private void setParams(String fragment, int start) {
+        final int length = fragment.length();
+        while (start < length) {
+            int end = fragment.indexOf('&', start);
+            if (end == -1) {
+                end = length;
             }
+            final int equals = fragment.indexOf('=', start);
+            if (equals == -1 || equals >= end - 1) {
+                throw new InvalidFragmentException(fragment.substring(start));
+            }
+            final int extra = fragment.indexOf('=', equals + 1);
+            if (extra != -1 && extra < end) {
+                throw new InvalidFragmentException(fragment.substring(start));
+            }
+            put(fragment.substring(start, equals), fragment.substring(equals + 1, end));
+            start = end + 1;
         }
     }
 
@@ -101,18 +106,16 @@ public class FragmentQuery implements Serializable {
             throw new InvalidFragmentException();
         }
 
-        if (!fragment.contains("?")) {
+        // path runs up to the last '?', parameters are parsed in the same pass
+        final int separator = fragment.lastIndexOf('?');
+        if (separator == -1) {
             path = fragment.substring(1);
             params = null;
             return;
         }
 
-        final Pattern compile = Pattern.compile("^\\#(.*)\\?(.*)?$");
-        final Matcher matcher = compile.matcher(fragment);
-        if (matcher.matches() && matcher.groupCount() == 2) {
-            setPath(matcher.group(1));
-            setParams(matcher.group(2));
-        }
+        setPath(fragment.substring(1, separator));
+        setParams(fragment, separator + 1);
     }
 
     public String getPath() {
@@ -123,6 +126,26 @@ public class FragmentQuery implements Serializable {
         return params != null ? params : Collections.EMPTY_MAP;
     }
 
+    /**
+     * @return the path followed by the parameters sorted by name, so that fragments that differ only in the order of their
+     *         parameters map to the same string.
+     */
+    public String getNormalizedQueryString() {
+        if (params == null || params.isEmpty()) {
+            return path;
+        }
+        final StringBuilder builder = new StringBuilder().append(path).append('?');
+        boolean first = true;
+        for (Entry<String, String> entry : new TreeMap<>(params).entrySet()) {
+            if (!first) {
+                builder.append('&');
+            }
+            builder.append(entry.getKey()).append('=').append(entry.getValue());
+            first = false;
+        }
+        return builder.toString();
+    }
+
     public String getQueryString() {
         String queryString = String.format("%s", path);
         final ArrayList<String> args = new ArrayList<String>();
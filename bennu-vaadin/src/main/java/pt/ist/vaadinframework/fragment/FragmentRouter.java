@@ -0,0 +1,226 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.fragment;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import pt.ist.vaadinframework.ui.EmbeddedComponentContainer;
+
+/**
+ * Resolves fragment paths to pages. Paths without parameters are resolved with a single hash lookup on the full path. Paths
+ * with segments of the form <code>{name}</code>, like <code>"person/{id}/edit"</code>, are compiled into a trie of segments
+ * that is walked once, binding the value of each parameter segment to its name.
+ * 
+ * Adding routes is not thread safe, routers shared between threads must be fully built before being published and never
+ * modified afterwards (see {@link pt.ist.vaadinframework.EmbeddedApplication#addPages(Map)}).
+ */
+public class FragmentRouter implements Serializable {
+    public static class Match implements Serializable {
+        private final PageHandle handle;
+
+        private final String route;
+
+        private final Map<String, String> pathParameters;
+
+        Match(PageHandle handle, String route, Map<String, String> pathParameters) {
+            this.handle = handle;
+            this.route = route;
+            this.pathParameters = pathParameters;
+        }
+
+        public PageHandle getHandle() {
+            return handle;
+        }
+
+        /**
+         * @return the route that matched, with its parameter segments unbound, like <code>"person/{id}/edit"</code>.
+         */
+        public String getRoute() {
+            return route;
+        }
+
+        /**
+         * @return the matched page class, loading it if this is the first time the route is used.
+         */
+        public Class<? extends EmbeddedComponentContainer> getPage() {
+            return handle.getPage();
+        }
+
+        public Map<String, String> getPathParameters() {
+            return pathParameters;
+        }
+    }
+
+    private static class Node implements Serializable {
+        private Map<String, Node> children;
+
+        private Node parameter;
+
+        private String parameterName;
+
+        private PageHandle page;
+
+        private String route;
+    }
+
+    private static final char SEPARATOR = '/';
+
+    private final Map<String, PageHandle> routes = new LinkedHashMap<>();
+
+    private final Map<String, PageHandle> staticRoutes = new HashMap<>();
+
+    private final Node root = new Node();
+
+    private boolean hasParameterRoutes = false;
+
+    public FragmentRouter() {
+    }
+
+    /**
+     * Builds a router with the given routes, in iteration order.
+     */
+    public FragmentRouter(Map<String, PageHandle> routes) {
+        for (Entry<String, PageHandle> route : routes.entrySet()) {
+            addRoute(route.getKey(), route.getValue());
+        }
+    }
+
+    /**
+     * @return all the routes of this router by path, in the order they were added.
+     */
+    public Map<String, PageHandle> getRoutes() {
+        return Collections.unmodifiableMap(routes);
+    }
+
+    public void addRoute(String path, Class<? extends EmbeddedComponentContainer> page) {
+        addRoute(path, new PageHandle(page));
+    }
+
+    public void addRoute(String path, PageHandle page) {
+        page.registeredAt(path);
+        if (path.indexOf('{') == -1) {
+            staticRoutes.put(path, page);
+            routes.put(path, page);
+            return;
+        }
+        Node node = root;
+        int start = 0;
+        while (start <= path.length()) {
+            int end = path.indexOf(SEPARATOR, start);
+            if (end == -1) {
+                end = path.length();
+            }
+            String segment = path.substring(start, end);
+            if (segment.length() > 1 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}') {
+                String name = segment.substring(1, segment.length() - 1);
+                if (node.parameter == null) {
+                    node.parameter = new Node();
+                    node.parameter.parameterName = name;
+                } else if (!node.parameter.parameterName.equals(name)) {
+                    throw new InvalidFragmentException("conflicting path parameter names: " + name + " and "
+                            + node.parameter.parameterName + " in " + path);
+                }
+                node = node.parameter;
+            } else {
+                if (node.children == null) {
+                    node.children = new HashMap<>();
+                }
+                Node child = node.children.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(segment, child);
+                }
+                node = child;
+            }
+            start = end + 1;
+        }
+        node.page = page;
+        node.route = path;
+        hasParameterRoutes = true;
+        routes.put(path, page);
+    }
+
+    /**
+     * @return the page and path parameters for the given path, or null if no route matches. Literal segments are preferred
+     *         over parameters, falling back to the parameter when the literal branch leads to no page.
+     */
+    public Match match(String path) {
+        if (path == null) {
+            return null;
+        }
+        PageHandle page = staticRoutes.get(path);
+        if (page != null) {
+            return new Match(page, path, Collections.<String, String> emptyMap());
+        }
+        if (!hasParameterRoutes) {
+            return null;
+        }
+        Map<String, String> parameters = new HashMap<>();
+        Node node = match(root, path, 0, parameters);
+        if (node == null) {
+            return null;
+        }
+        return new Match(node.page, node.route, parameters.isEmpty() ? Collections.<String, String> emptyMap() : parameters);
+    }
+
+    /**
+     * Walks the trie from the segment of the path starting at the given position, binding the parameters of the branch that
+     * matches and unbinding them when backtracking.
+     * 
+     * @return the node holding the matched page, or null if no branch below the given node matches.
+     */
+    private static Node match(Node node, String path, int start, Map<String, String> parameters) {
+        if (start > path.length()) {
+            return node.page != null ? node : null;
+        }
+        int end = path.indexOf(SEPARATOR, start);
+        if (end == -1) {
+            end = path.length();
+        }
+        String segment = path.substring(start, end);
+        Node child = node.children != null ? node.children.get(segment) : null;
+        if (child != null) {
+            Node result = match(child, path, end + 1, parameters);
+            if (result != null) {
+                return result;
+            }
+        }
+        if (node.parameter != null && !segment.isEmpty()) {
+            String previous = parameters.put(node.parameter.parameterName, segment);
+            Node result = match(node.parameter, path, end + 1, parameters);
+            if (result != null) {
+                return result;
+            }
+            if (previous != null) {
+                parameters.put(node.parameter.parameterName, previous);
+            } else {
+                parameters.remove(node.parameter.parameterName);
+            }
+        }
+        return null;
+    }
+}
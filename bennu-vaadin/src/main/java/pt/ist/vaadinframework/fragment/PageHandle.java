@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.fragment;
+
+import java.io.Serializable;
+
+import pt.ist.vaadinframework.PageLoadingError;
+import pt.ist.vaadinframework.annotation.EmbeddedComponent;
+import pt.ist.vaadinframework.annotation.EmbeddedRoute;
+import pt.ist.vaadinframework.ui.EmbeddedComponentContainer;
+
+/**
+ * Reference to the page registered for a route. Handles built from an {@link EmbeddedRoute} carry the persistence flag and
+ * arguments of the {@link EmbeddedComponent} annotation, so the page class is only loaded the first time its route is
+ * navigated to.
+ */
+public class PageHandle implements Serializable {
+    private final String className;
+
+    private final boolean persistent;
+
+    private final String[] args;
+
+    private String route;
+
+    private transient ClassLoader loader;
+
+    private transient volatile Class<? extends EmbeddedComponentContainer> page;
+
+    public PageHandle(EmbeddedRoute route, ClassLoader loader) {
+        this.route = route.getPath();
+        this.className = route.getClassName();
+        this.persistent = route.isPersistent();
+        this.args = route.getArgs();
+        this.loader = loader;
+    }
+
+    public PageHandle(Class<? extends EmbeddedComponentContainer> page) {
+        EmbeddedComponent annotation = page.getAnnotation(EmbeddedComponent.class);
+        this.className = page.getName();
+        this.persistent = annotation != null && annotation.persistent();
+        this.args = annotation != null ? annotation.args() : new String[0];
+        this.loader = page.getClassLoader();
+        this.page = page;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the route this page was first registered for, used as the page key of the request statistics.
+     */
+    public String getRoute() {
+        return route;
+    }
+
+    void registeredAt(String path) {
+        if (route == null) {
+            route = path;
+        }
+    }
+
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    public String[] getArgs() {
+        return args;
+    }
+
+    public boolean isLoaded() {
+        return page != null;
+    }
+
+    /**
+     * @return the page class, loading it on the first call.
+     * @throws PageLoadingError
+     *             if the class can no longer be found.
+     */
+    @SuppressWarnings("unchecked")
+    public Class<? extends EmbeddedComponentContainer> getPage() {
+        Class<? extends EmbeddedComponentContainer> result = page;
+        if (result == null) {
+            try {
+                ClassLoader classLoader = loader != null ? loader : Thread.currentThread().getContextClassLoader();
+                result = (Class<? extends EmbeddedComponentContainer>) Class.forName(className, true, classLoader);
+            } catch (ClassNotFoundException e) {
+                throw new PageLoadingError(e);
+            }
+            page = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return className;
+    }
+}
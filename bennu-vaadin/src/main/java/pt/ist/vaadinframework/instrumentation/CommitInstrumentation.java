@@ -0,0 +1,317 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.instrumentation;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import pt.ist.fenixframework.core.WriteOnReadError;
+import pt.ist.vaadinframework.VaadinFrameworkLogger;
+import pt.ist.vaadinframework.data.CommitCoordinator;
+
+/**
+ * Instrumentation of the commits of buffered properties, items, containers and forms. Each of them runs its commit through
+ * {@link CommitCoordinator}, and so through {@link #commit(String, Runnable)}, nested commits join the outermost one of the
+ * thread and its single {@code @Atomic} scope. The atomic body calls {@link #attempt()} first: when the transaction manager
+ * restarts the transaction the body runs again, which is how retries are counted. A restart that follows a
+ * {@link WriteOnReadError} is the upgrade of a transaction started read-only to read-write, not contention: it is counted as an
+ * upgrade and never as a retry or a conflict.
+ * 
+ * On any other restart the {@link CommitRetryPolicy} may abort the attempt, wait outside the transaction and start a fresh
+ * one, or give up with a {@link CommitRetriesExhaustedException}. When the outermost commit ends its latency, retries,
+ * conflicts and write set size are recorded in the {@link CommitStatistics} of every scope it went through, usually the form
+ * and the domain class of the item, which are also published through JMX.
+ */
+public class CommitInstrumentation {
+    public static final String FORM_SCOPE = "form:";
+
+    public static final String CLASS_SCOPE = "class:";
+
+    public static final String UNSCOPED = "<unscoped>";
+
+    /**
+     * Thrown by {@link CommitInstrumentation#attempt()} to leave the transaction before waiting for a retry.
+     */
+    @SuppressWarnings("serial")
+    private static class Backoff extends RuntimeException {
+        private final long delay;
+
+        public Backoff(long delay) {
+            super(null, null, false, false);
+            this.delay = delay;
+        }
+    }
+
+    public static class Commit {
+        private final long start = System.nanoTime();
+
+        private final Set<String> scopes = new LinkedHashSet<String>();
+
+        private int depth = 1;
+
+        private int attempts = 0;
+
+        private int retries = 0;
+
+        private int conflicts = 0;
+
+        private int upgrades = 0;
+
+        private int writeSetSize = 0;
+
+        private boolean resumed = false;
+
+        private Throwable restartCause;
+
+        private void addScope(String scope) {
+            if (scope != null) {
+                scopes.add(scope);
+            }
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+
+        public int getConflicts() {
+            return conflicts;
+        }
+
+        /**
+         * @return the restarts that only upgraded the transaction to read-write.
+         */
+        public int getUpgrades() {
+            return upgrades;
+        }
+
+        public int getWriteSetSize() {
+            return writeSetSize;
+        }
+    }
+
+    private static final ConcurrentMap<String, CommitStatistics> statistics = new ConcurrentHashMap<String, CommitStatistics>();
+
+    private static final ThreadLocal<Commit> current = new ThreadLocal<Commit>();
+
+    private static volatile CommitRetryPolicy retryPolicy = CommitRetryPolicy.fromSystemProperties();
+
+    private CommitInstrumentation() {
+    }
+
+    public static CommitRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public static void setRetryPolicy(CommitRetryPolicy retryPolicy) {
+        CommitInstrumentation.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @return the commit running in this thread, or null.
+     */
+    public static Commit current() {
+        return current.get();
+    }
+
+    /**
+     * Runs an atomic commit. The outermost commit of the thread waits and runs the transaction again when the retry policy
+     * asks it to, and records the statistics when done.
+     * 
+     * @param scope
+     *            a {@link #FORM_SCOPE} or {@link #CLASS_SCOPE} prefixed name, or null if the caller does not define a scope.
+     * @param atomicCommit
+     *            invokes the {@code @Atomic} commit method.
+     */
+    public static void commit(String scope, Runnable atomicCommit) {
+        Commit commit = current.get();
+        if (commit != null) {
+            commit.depth++;
+            commit.addScope(scope);
+            try {
+                atomicCommit.run();
+            } finally {
+                commit.depth--;
+            }
+            return;
+        }
+        commit = new Commit();
+        commit.addScope(scope);
+        current.set(commit);
+        boolean committed = false;
+        try {
+            while (true) {
+                try {
+                    atomicCommit.run();
+                    committed = true;
+                    return;
+                } catch (Backoff backoff) {
+                    commit.resumed = true;
+                    try {
+                        Thread.sleep(backoff.delay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new CommitRetriesExhaustedException(commit.retries, e);
+                    }
+                }
+            }
+        } finally {
+            current.remove();
+            record(commit, System.nanoTime() - commit.start, committed);
+        }
+    }
+
+    /**
+     * Marks the start of a run of an atomic commit body, to be called before any other work in the body. Upgrades to
+     * read-write do not count towards the retry policy and are never delayed.
+     * 
+     * @throws CommitRetriesExhaustedException
+     *             if the transaction was restarted more times than the retry policy allows.
+     */
+    public static void attempt() {
+        Commit commit = current.get();
+        if (commit == null || commit.depth != 1) {
+            return;
+        }
+        commit.attempts++;
+        commit.writeSetSize = 0;
+        if (commit.attempts == 1) {
+            return;
+        }
+        if (commit.resumed) {
+            commit.resumed = false;
+            return;
+        }
+        if (commit.restartCause instanceof WriteOnReadError) {
+            commit.restartCause = null;
+            commit.upgrades++;
+            return;
+        }
+        commit.restartCause = null;
+        commit.retries++;
+        commit.conflicts++;
+        CommitRetryPolicy policy = retryPolicy;
+        if (commit.retries + 1 > policy.getMaxAttempts()) {
+            throw new CommitRetriesExhaustedException(commit.retries, null);
+        }
+        long delay = policy.getBackoffMillis(commit.retries);
+        if (delay > 0) {
+            commit.attempts--;
+            throw new Backoff(delay);
+        }
+    }
+
+    /**
+     * Records a transaction error that makes the transaction manager restart the commit.
+     */
+    public static void restarting(Throwable cause) {
+        Commit commit = current.get();
+        if (commit != null) {
+            commit.restartCause = cause;
+        }
+    }
+
+    /**
+     * Adds to the write set size of the running attempt.
+     */
+    public static void wrote(int writes) {
+        Commit commit = current.get();
+        if (commit != null) {
+            commit.writeSetSize += writes;
+        }
+    }
+
+    private static void record(Commit commit, long latencyNanos, boolean committed) {
+        if (commit.retries > 0 && VaadinFrameworkLogger.getLogger().isDebugEnabled()) {
+            VaadinFrameworkLogger.getLogger().debug(
+                    "commit of " + commit.scopes + " ran " + commit.attempts + " times (" + commit.conflicts + " conflicts)");
+        }
+        if (commit.scopes.isEmpty()) {
+            commit.scopes.add(UNSCOPED);
+        }
+        for (String scope : commit.scopes) {
+            getStatistics(scope).record(latencyNanos, commit.retries, commit.conflicts, commit.writeSetSize, committed);
+        }
+    }
+
+    public static CommitStatistics getStatistics(String scope) {
+        CommitStatistics commitStatistics = statistics.get(scope);
+        if (commitStatistics == null) {
+            CommitStatistics created = new CommitStatistics(scope);
+            commitStatistics = statistics.putIfAbsent(scope, created);
+            if (commitStatistics == null) {
+                commitStatistics = created;
+                register(created);
+            }
+        }
+        return commitStatistics;
+    }
+
+    /**
+     * @return the statistics of every scope seen so far, most conflicting first.
+     */
+    public static List<CommitStatistics> getAllStatistics() {
+        List<CommitStatistics> result = new ArrayList<CommitStatistics>(statistics.values());
+        Collections.sort(result, new Comparator<CommitStatistics>() {
+            @Override
+            public int compare(CommitStatistics o1, CommitStatistics o2) {
+                int byConflicts = Long.compare(o2.getConflictCount(), o1.getConflictCount());
+                return byConflicts != 0 ? byConflicts : Double.compare(o2.getLatencyMeanMillis(), o1.getLatencyMeanMillis());
+            }
+        });
+        return result;
+    }
+
+    public static void resetAll() {
+        for (CommitStatistics commitStatistics : statistics.values()) {
+            commitStatistics.reset();
+        }
+    }
+
+    private static void register(CommitStatistics commitStatistics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name =
+                    new ObjectName(PageInstrumentation.JMX_DOMAIN + ":type=CommitStatistics,scope="
+                            + ObjectName.quote(commitStatistics.getScope()));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(commitStatistics, name);
+            }
+        } catch (JMException e) {
+            VaadinFrameworkLogger.getLogger().warn("Could not publish commit statistics for: " + commitStatistics.getScope(), e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.instrumentation;
+
+import java.util.Random;
+
+/**
+ * How many times a buffered commit may run and how long to wait, outside the transaction, before running it again once the
+ * transaction manager restarted it. The delay grows exponentially from {@link #getInitialBackoffMillis()} up to
+ * {@link #getMaxBackoffMillis()}, with random jitter so that users colliding on the same objects do not retry in lockstep. The
+ * default policy retries forever without waiting, as plain {@code @Atomic} methods do.
+ */
+public class CommitRetryPolicy {
+    public static final String MAX_ATTEMPTS_PROPERTY = "bennu.vaadin.commit.maxAttempts";
+
+    public static final String INITIAL_BACKOFF_PROPERTY = "bennu.vaadin.commit.initialBackoffMillis";
+
+    public static final String MAX_BACKOFF_PROPERTY = "bennu.vaadin.commit.maxBackoffMillis";
+
+    public static final int UNLIMITED_ATTEMPTS = Integer.MAX_VALUE;
+
+    private static final Random jitter = new Random();
+
+    private final int maxAttempts;
+
+    private final long initialBackoffMillis;
+
+    private final long maxBackoffMillis;
+
+    public CommitRetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = Math.max(0, initialBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * @return the policy given by the {@link #MAX_ATTEMPTS_PROPERTY}, {@link #INITIAL_BACKOFF_PROPERTY} and
+     *         {@link #MAX_BACKOFF_PROPERTY} system properties, defaulting to unlimited attempts without backoff.
+     */
+    public static CommitRetryPolicy fromSystemProperties() {
+        int maxAttempts = Integer.getInteger(MAX_ATTEMPTS_PROPERTY, UNLIMITED_ATTEMPTS);
+        long initialBackoff = Long.getLong(INITIAL_BACKOFF_PROPERTY, 0);
+        long maxBackoff = Long.getLong(MAX_BACKOFF_PROPERTY, initialBackoff * 32);
+        return new CommitRetryPolicy(maxAttempts, initialBackoff, maxBackoff);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /**
+     * @param retry
+     *            the number of the retry about to run, starting at 1.
+     * @return the time to wait before it, between half and the whole of the exponential delay.
+     */
+    public long getBackoffMillis(int retry) {
+        if (initialBackoffMillis == 0) {
+            return 0;
+        }
+        long delay = initialBackoffMillis << Math.min(retry - 1, 30);
+        if (delay <= 0 || delay > maxBackoffMillis) {
+            delay = maxBackoffMillis;
+        }
+        return delay / 2 + (long) (jitter.nextDouble() * (delay - delay / 2));
+    }
+
+    @Override
+    public String toString() {
+        return "maxAttempts=" + (maxAttempts == UNLIMITED_ATTEMPTS ? "unlimited" : maxAttempts) + ", backoff="
+                + initialBackoffMillis + ".." + maxBackoffMillis + "ms";
+    }
+}
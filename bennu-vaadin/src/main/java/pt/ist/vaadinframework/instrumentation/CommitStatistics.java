@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.instrumentation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Commit statistics of a single scope, a form or a domain class: latency including retries and backoff, how often the
+ * transaction was run again and how many of those runs were caused by conflicts, and the size of the write set of the attempt
+ * that committed.
+ */
+public class CommitStatistics implements CommitStatisticsMBean {
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    private final String scope;
+
+    private final Histogram latency = new Histogram();
+
+    private final Histogram retries = new Histogram();
+
+    private final Histogram writeSet = new Histogram();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final AtomicLong conflicts = new AtomicLong();
+
+    public CommitStatistics(String scope) {
+        this.scope = scope;
+    }
+
+    void record(long latencyNanos, int retryCount, int conflictCount, int writeSetSize, boolean committed) {
+        latency.record(latencyNanos);
+        retries.record(retryCount);
+        conflicts.addAndGet(conflictCount);
+        if (committed) {
+            writeSet.record(writeSetSize);
+        } else {
+            failures.incrementAndGet();
+        }
+    }
+
+    @Override
+    public String getScope() {
+        return scope;
+    }
+
+    @Override
+    public long getCommitCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    @Override
+    public double getLatencyMeanMillis() {
+        return latency.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyP95Millis() {
+        return latency.getPercentile(0.95) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyMaxMillis() {
+        return latency.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retries.getSum();
+    }
+
+    @Override
+    public long getConflictCount() {
+        return conflicts.get();
+    }
+
+    @Override
+    public long getRetriesMax() {
+        return retries.getMax();
+    }
+
+    @Override
+    public double getWriteSetMean() {
+        return writeSet.getMean();
+    }
+
+    @Override
+    public long getWriteSetP95() {
+        return writeSet.getPercentile(0.95);
+    }
+
+    @Override
+    public long getWriteSetMax() {
+        return writeSet.getMax();
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        retries.reset();
+        writeSet.reset();
+        failures.set(0);
+        conflicts.set(0);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.instrumentation;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import pt.ist.vaadinframework.VaadinFrameworkLogger;
+import pt.ist.vaadinframework.terminal.ThrowableFingerprint;
+
+/**
+ * Aggregates uncaught errors by {@link ThrowableFingerprint}, so that a failure repeating during an incident does not flood the
+ * logs: only the first {@link #getFullTraceLimit()} occurrences of a failure within the sliding window are logged with their
+ * stack trace, later ones are logged as a single line with the current count. The counts are published through JMX and shown
+ * in the system information page.
+ */
+public class ErrorAggregator implements ErrorAggregatorMBean {
+    public static final long DEFAULT_WINDOW = TimeUnit.MINUTES.toMillis(10);
+
+    public static final int DEFAULT_BUCKETS = 10;
+
+    public static final int DEFAULT_FULL_TRACE_LIMIT = 10;
+
+    /**
+     * Distinct failures tracked at most, further ones are counted together under {@link #OVERFLOW_FINGERPRINT}.
+     */
+    public static final int MAX_FINGERPRINTS = 1000;
+
+    public static final String OVERFLOW_FINGERPRINT = "<other>";
+
+    private static final ErrorAggregator instance = new ErrorAggregator();
+
+    static {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(PageInstrumentation.JMX_DOMAIN + ":type=ErrorAggregator");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(instance, name);
+            }
+        } catch (JMException e) {
+            VaadinFrameworkLogger.getLogger().warn("Could not publish error statistics", e);
+        }
+    }
+
+    private final ConcurrentMap<String, ErrorStatistics> statistics = new ConcurrentHashMap<String, ErrorStatistics>();
+
+    private volatile int fullTraceLimit = DEFAULT_FULL_TRACE_LIMIT;
+
+    private ErrorAggregator() {
+    }
+
+    public static ErrorAggregator getInstance() {
+        return instance;
+    }
+
+    /**
+     * Counts an occurrence of the error and logs it, with the stack trace only while the failure is below the full trace limit
+     * in the current window.
+     */
+    public void logError(String message, Throwable error) {
+        String fingerprint = ThrowableFingerprint.of(error);
+        ErrorStatistics errorStatistics = getStatistics(fingerprint, error);
+        long count = errorStatistics.record();
+        if (count <= fullTraceLimit) {
+            VaadinFrameworkLogger.getLogger().error(message + " [" + fingerprint + "]", error);
+        } else {
+            VaadinFrameworkLogger.getLogger().error(
+                    message + " [" + fingerprint + "] " + error.getClass().getName() + ": " + error.getMessage() + " ("
+                            + count + " occurrences in the last " + errorStatistics.getWindowMinutes()
+                            + " minutes, stack trace omitted)");
+        }
+    }
+
+    private ErrorStatistics getStatistics(String fingerprint, Throwable error) {
+        ErrorStatistics errorStatistics = statistics.get(fingerprint);
+        if (errorStatistics == null) {
+            if (statistics.size() >= MAX_FINGERPRINTS) {
+                fingerprint = OVERFLOW_FINGERPRINT;
+                errorStatistics = statistics.get(fingerprint);
+                if (errorStatistics != null) {
+                    return errorStatistics;
+                }
+            }
+            ErrorStatistics created = new ErrorStatistics(fingerprint, error, DEFAULT_WINDOW, DEFAULT_BUCKETS);
+            errorStatistics = statistics.putIfAbsent(fingerprint, created);
+            if (errorStatistics == null) {
+                errorStatistics = created;
+            }
+        }
+        return errorStatistics;
+    }
+
+    /**
+     * @return the statistics of every failure seen, most frequent in the current window first.
+     */
+    public List<ErrorStatistics> getAllStatistics() {
+        List<ErrorStatistics> result = new ArrayList<ErrorStatistics>(statistics.values());
+        final Map<ErrorStatistics, Long> counts = new HashMap<ErrorStatistics, Long>();
+        for (ErrorStatistics errorStatistics : result) {
+            counts.put(errorStatistics, errorStatistics.getWindowCount());
+        }
+        Collections.sort(result, new Comparator<ErrorStatistics>() {
+            @Override
+            public int compare(ErrorStatistics o1, ErrorStatistics o2) {
+                int byWindow = Long.compare(counts.get(o2), counts.get(o1));
+                return byWindow != 0 ? byWindow : Long.compare(o2.getTotalCount(), o1.getTotalCount());
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public int getFingerprintCount() {
+        return statistics.size();
+    }
+
+    @Override
+    public long getTotalCount() {
+        long total = 0;
+        for (ErrorStatistics errorStatistics : statistics.values()) {
+            total += errorStatistics.getTotalCount();
+        }
+        return total;
+    }
+
+    @Override
+    public int getFullTraceLimit() {
+        return fullTraceLimit;
+    }
+
+    @Override
+    public void setFullTraceLimit(int limit) {
+        this.fullTraceLimit = limit;
+    }
+
+    @Override
+    public String[] getTopErrors() {
+        List<String> lines = new ArrayList<String>();
+        for (ErrorStatistics errorStatistics : getAllStatistics()) {
+            lines.add(errorStatistics.getFingerprint() + " " + errorStatistics.getWindowCount() + "/"
+                    + errorStatistics.getTotalCount() + " " + errorStatistics.getType() + ": " + errorStatistics.getMessage());
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public void reset() {
+        statistics.clear();
+    }
+}
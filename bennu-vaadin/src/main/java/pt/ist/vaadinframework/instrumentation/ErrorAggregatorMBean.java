@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.instrumentation;
+
+/**
+ * JMX view over the uncaught errors aggregated by {@link ErrorAggregator}.
+ */
+public interface ErrorAggregatorMBean {
+    public int getFingerprintCount();
+
+    public long getTotalCount();
+
+    public int getFullTraceLimit();
+
+    public void setFullTraceLimit(int limit);
+
+    /**
+     * @return one line per failure: fingerprint, occurrences in the window, total occurrences, type and message.
+     */
+    public String[] getTopErrors();
+
+    public void reset();
+}
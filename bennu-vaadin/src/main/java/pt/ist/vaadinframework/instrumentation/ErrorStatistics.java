@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.instrumentation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+
+/**
+ * Occurrences of one failure, identified by its {@link pt.ist.vaadinframework.terminal.ThrowableFingerprint}. Besides the total,
+ * occurrences are counted in a sliding window made of a ring of fixed length buckets.
+ */
+public class ErrorStatistics {
+    private final String fingerprint;
+
+    private final String type;
+
+    private final String message;
+
+    private final long bucketMillis;
+
+    private final long[] buckets;
+
+    private final long[] bucketIds;
+
+    private long total;
+
+    private long firstSeen;
+
+    private long lastSeen;
+
+    public ErrorStatistics(String fingerprint, Throwable sample, long windowMillis, int bucketCount) {
+        this.fingerprint = fingerprint;
+        this.type = sample.getClass().getName();
+        this.message = sample.getMessage();
+        this.bucketMillis = Math.max(1, windowMillis / bucketCount);
+        this.buckets = new long[bucketCount];
+        this.bucketIds = new long[bucketCount];
+    }
+
+    /**
+     * Counts an occurrence.
+     * 
+     * @return the number of occurrences in the window, including this one.
+     */
+    public synchronized long record() {
+        long now = System.currentTimeMillis();
+        if (total == 0) {
+            firstSeen = now;
+        }
+        lastSeen = now;
+        total++;
+        long id = now / bucketMillis;
+        int index = (int) (id % buckets.length);
+        if (bucketIds[index] != id) {
+            bucketIds[index] = id;
+            buckets[index] = 0;
+        }
+        buckets[index]++;
+        return windowCount(id);
+    }
+
+    private long windowCount(long currentId) {
+        long count = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            if (currentId - bucketIds[i] < buckets.length) {
+                count += buckets[i];
+            }
+        }
+        return count;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the message of the first occurrence.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public synchronized long getTotalCount() {
+        return total;
+    }
+
+    public synchronized long getWindowCount() {
+        return windowCount(System.currentTimeMillis() / bucketMillis);
+    }
+
+    public long getWindowMinutes() {
+        return TimeUnit.MILLISECONDS.toMinutes(bucketMillis * buckets.length);
+    }
+
+    public synchronized DateTime getFirstSeen() {
+        return total == 0 ? null : new DateTime(firstSeen);
+    }
+
+    public synchronized DateTime getLastSeen() {
+        return total == 0 ? null : new DateTime(lastSeen);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.instrumentation;
+
+import java.io.PrintWriter;
+
+import pt.ist.vaadinframework.data.RenderingTransaction;
+
+import com.vaadin.Application;
+import com.vaadin.terminal.PaintException;
+import com.vaadin.terminal.Paintable.RepaintRequestEvent;
+import com.vaadin.terminal.gwt.server.CommunicationManager;
+import com.vaadin.ui.Window;
+
+/**
+ * Communication manager that reports every component marked for painting to the {@link PageInstrumentation} sample of the
+ * current request, and paints the response in a read-only {@link RenderingTransaction}.
+ */
+@SuppressWarnings("serial")
+public class InstrumentedCommunicationManager extends CommunicationManager {
+    public InstrumentedCommunicationManager(Application application) {
+        super(application);
+    }
+
+    @Override
+    public void repaintRequested(RepaintRequestEvent event) {
+        super.repaintRequested(event);
+        PageInstrumentation.painted(event.getPaintable());
+    }
+
+    @Override
+    public void writeUidlResponce(final Callback callback, final boolean repaintAll, final PrintWriter outWriter,
+            final Window window, final boolean analyzeLayouts) throws PaintException {
+        final PaintException[] failure = new PaintException[1];
+        RenderingTransaction.render("paint:" + window.getName(), new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    InstrumentedCommunicationManager.super.writeUidlResponce(callback, repaintAll, outWriter, window,
+                            analyzeLayouts);
+                } catch (PaintException e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+}
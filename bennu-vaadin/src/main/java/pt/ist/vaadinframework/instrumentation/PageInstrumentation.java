@@ -0,0 +1,254 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.instrumentation;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import pt.ist.vaadinframework.VaadinFrameworkLogger;
+
+import com.vaadin.terminal.Paintable;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.ComponentContainer;
+import com.vaadin.ui.Table;
+
+/**
+ * Per route request statistics for the embedded application. The servlet opens a {@link Sample} around each UIDL request,
+ * the communication manager reports the components it paints, the container prefetches report the backend calls they make,
+ * the application tags the sample with the route of the page shown in the window, like <code>"person/{id}"</code>, and, when
+ * the page changed or every {@link #TREE_SIZE_SAMPLE_INTERVAL} requests, its component tree size, and on completion the
+ * sample is folded into the {@link PageStatistics} of that route, which is also published through JMX. Keying by route rather
+ * than by the requested path keeps the number of statistics bounded by the number of registered pages.
+ */
+public class PageInstrumentation {
+    public static final String JMX_DOMAIN = "pt.ist.vaadinframework";
+
+    public static final String UNKNOWN_PATH = "<unknown>";
+
+    public static class Sample {
+        private final long start = System.nanoTime();
+
+        private final Map<Paintable, Boolean> painted = new IdentityHashMap<Paintable, Boolean>();
+
+        private String path;
+
+        private int treeSize = -1;
+
+        private int prefetched = -1;
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public void setTreeSize(int treeSize) {
+            this.treeSize = treeSize;
+        }
+
+        void painted(Paintable paintable) {
+            painted.put(paintable, Boolean.TRUE);
+        }
+
+        void prefetched(int calls) {
+            prefetched = Math.max(prefetched, 0) + calls;
+        }
+    }
+
+    public static final int TREE_SIZE_SAMPLE_INTERVAL = 50;
+
+    /**
+     * The state of the component tree sampling of a window, see {@link PageInstrumentation#shouldCountComponents}.
+     */
+    public static class TreeSizeSampling implements Serializable {
+        private transient Object page;
+
+        private int requests = 0;
+    }
+
+    private static final ConcurrentMap<String, PageStatistics> statistics = new ConcurrentHashMap<String, PageStatistics>();
+
+    private static final ThreadLocal<Sample> current = new ThreadLocal<Sample>();
+
+    private static volatile boolean enabled = true;
+
+    /**
+     * {@link Table} has no accessor for the components of its rendered cells, the field is looked up once.
+     */
+    private static final Field TABLE_CELLS_FIELD = getTableCellsField();
+
+    private PageInstrumentation() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        PageInstrumentation.enabled = enabled;
+    }
+
+    public static Sample begin() {
+        Sample sample = new Sample();
+        current.set(sample);
+        return sample;
+    }
+
+    /**
+     * @return the sample of the request being handled by this thread, or null if the request is not being measured.
+     */
+    public static Sample current() {
+        return current.get();
+    }
+
+    public static void painted(Paintable paintable) {
+        Sample sample = current.get();
+        if (sample != null) {
+            sample.painted(paintable);
+        }
+    }
+
+    /**
+     * Reports the backend calls made by a {@code DomainContainer} prefetch.
+     */
+    public static void prefetched(int calls) {
+        Sample sample = current.get();
+        if (sample != null) {
+            sample.prefetched(calls);
+        }
+    }
+
+    public static void end(Sample sample, long responseBytes) {
+        current.remove();
+        String path = sample.path != null ? sample.path : UNKNOWN_PATH;
+        getStatistics(path).record(System.nanoTime() - sample.start, responseBytes, sample.painted.size(), sample.treeSize,
+                sample.prefetched);
+    }
+
+    public static PageStatistics getStatistics(String path) {
+        PageStatistics pageStatistics = statistics.get(path);
+        if (pageStatistics == null) {
+            PageStatistics created = new PageStatistics(path);
+            pageStatistics = statistics.putIfAbsent(path, created);
+            if (pageStatistics == null) {
+                pageStatistics = created;
+                register(created);
+            }
+        }
+        return pageStatistics;
+    }
+
+    /**
+     * @return the statistics of every path seen so far, slowest mean latency first.
+     */
+    public static List<PageStatistics> getAllStatistics() {
+        List<PageStatistics> result = new ArrayList<PageStatistics>(statistics.values());
+        Collections.sort(result, new Comparator<PageStatistics>() {
+            @Override
+            public int compare(PageStatistics o1, PageStatistics o2) {
+                return Double.compare(o2.getLatencyMeanMillis(), o1.getLatencyMeanMillis());
+            }
+        });
+        return result;
+    }
+
+    public static void resetAll() {
+        for (PageStatistics pageStatistics : statistics.values()) {
+            pageStatistics.reset();
+        }
+    }
+
+    /**
+     * Counts the components reachable from the given root through {@link ComponentContainer}s and the component cells
+     * currently rendered by {@link Table}s.
+     */
+    public static int countComponents(Component root) {
+        int count = 1;
+        if (root instanceof ComponentContainer) {
+            for (Iterator<Component> iterator = ((ComponentContainer) root).getComponentIterator(); iterator.hasNext();) {
+                count += countComponents(iterator.next());
+            }
+        } else if (root instanceof Table && TABLE_CELLS_FIELD != null) {
+            try {
+                Collection<Component> cells = (Collection<Component>) TABLE_CELLS_FIELD.get(root);
+                if (cells != null) {
+                    for (Component cell : cells) {
+                        count += countComponents(cell);
+                    }
+                }
+            } catch (IllegalAccessException e) {
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true if the component tree of a window should be counted for this request: when it shows another page than
+     *         at the last count, or every {@link #TREE_SIZE_SAMPLE_INTERVAL} requests otherwise.
+     */
+    public static boolean shouldCountComponents(TreeSizeSampling sampling, Object page) {
+        if (page != sampling.page || ++sampling.requests >= TREE_SIZE_SAMPLE_INTERVAL) {
+            sampling.page = page;
+            sampling.requests = 0;
+            return true;
+        }
+        return false;
+    }
+
+    private static Field getTableCellsField() {
+        try {
+            Field field = Table.class.getDeclaredField("visibleComponents");
+            field.setAccessible(true);
+            return field;
+        } catch (SecurityException e) {
+            return null;
+        } catch (NoSuchFieldException e) {
+            return null;
+        }
+    }
+
+    private static void register(PageStatistics pageStatistics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name =
+                    new ObjectName(JMX_DOMAIN + ":type=PageStatistics,path=" + ObjectName.quote(pageStatistics.getPath()));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(pageStatistics, name);
+            }
+        } catch (JMException e) {
+            VaadinFrameworkLogger.getLogger().warn("Could not publish page statistics for: " + pageStatistics.getPath(), e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.instrumentation;
+
+/**
+ * Request histograms of a single route: latency, UIDL response size, number of components painted, size of the
+ * server side component tree of the window and backend round trips of the container prefetches.
+ */
+public class PageStatistics implements PageStatisticsMBean {
+    private static final double NANOS_PER_MILLI = 1000000d;
+
+    private final String path;
+
+    private final Histogram latency = new Histogram();
+
+    private final Histogram uidlBytes = new Histogram();
+
+    private final Histogram paintedComponents = new Histogram();
+
+    private final Histogram componentTreeSize = new Histogram();
+
+    private final Histogram prefetchRoundTrips = new Histogram();
+
+    public PageStatistics(String path) {
+        this.path = path;
+    }
+
+    void record(long latencyNanos, long bytes, int painted, int treeSize, int prefetched) {
+        latency.record(latencyNanos);
+        uidlBytes.record(bytes);
+        paintedComponents.record(painted);
+        if (treeSize >= 0) {
+            componentTreeSize.record(treeSize);
+        }
+        if (prefetched >= 0) {
+            prefetchRoundTrips.record(prefetched);
+        }
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public long getRequestCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public double getLatencyMeanMillis() {
+        return latency.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyP95Millis() {
+        return latency.getPercentile(0.95) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyMaxMillis() {
+        return latency.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getUidlBytesMean() {
+        return uidlBytes.getMean();
+    }
+
+    @Override
+    public long getUidlBytesP95() {
+        return uidlBytes.getPercentile(0.95);
+    }
+
+    @Override
+    public long getUidlBytesMax() {
+        return uidlBytes.getMax();
+    }
+
+    @Override
+    public double getPaintedComponentsMean() {
+        return paintedComponents.getMean();
+    }
+
+    @Override
+    public long getPaintedComponentsP95() {
+        return paintedComponents.getPercentile(0.95);
+    }
+
+    @Override
+    public long getPaintedComponentsMax() {
+        return paintedComponents.getMax();
+    }
+
+    @Override
+    public double getComponentTreeSizeMean() {
+        return componentTreeSize.getMean();
+    }
+
+    @Override
+    public long getComponentTreeSizeMax() {
+        return componentTreeSize.getMax();
+    }
+
+    @Override
+    public double getPrefetchRoundTripsMean() {
+        return prefetchRoundTrips.getMean();
+    }
+
+    @Override
+    public long getPrefetchRoundTripsP95() {
+        return prefetchRoundTrips.getPercentile(0.95);
+    }
+
+    @Override
+    public long getPrefetchRoundTripsMax() {
+        return prefetchRoundTrips.getMax();
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        uidlBytes.reset();
+        paintedComponents.reset();
+        componentTreeSize.reset();
+        prefetchRoundTrips.reset();
+    }
+}
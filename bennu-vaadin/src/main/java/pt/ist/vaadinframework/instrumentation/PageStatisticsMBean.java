@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.instrumentation;
+
+/**
+ * JMX view over the {@link PageStatistics} of one route.
+ */
+public interface PageStatisticsMBean {
+    public String getPath();
+
+    public long getRequestCount();
+
+    public double getLatencyMeanMillis();
+
+    public double getLatencyP95Millis();
+
+    public double getLatencyMaxMillis();
+
+    public double getUidlBytesMean();
+
+    public long getUidlBytesP95();
+
+    public long getUidlBytesMax();
+
+    public double getPaintedComponentsMean();
+
+    public long getPaintedComponentsP95();
+
+    public long getPaintedComponentsMax();
+
+    public double getComponentTreeSizeMean();
+
+    public long getComponentTreeSizeMax();
+
+    public double getPrefetchRoundTripsMean();
+
+    public long getPrefetchRoundTripsP95();
+
+    public long getPrefetchRoundTripsMax();
+
+    public void reset();
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.terminal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import jvstm.cps.ConsistencyException;
+import pt.ist.bennu.core.domain.exceptions.DomainException;
+import pt.ist.fenixframework.core.TransactionError;
+import pt.ist.fenixframework.core.WriteOnReadError;
+
+import com.vaadin.data.Buffered;
+import com.vaadin.data.Buffered.SourceException;
+import com.vaadin.data.Validator.InvalidValueException;
+
+/**
+ * Classifies a cause chain in a single depth first pass. {@link #of(Throwable)} follows all the causes of
+ * {@link SourceException}s and {@link Throwable#getCause()} of other throwables, {@link #ofFirstCauses(Throwable)} follows
+ * only {@link Throwable#getCause()}, which for a {@link SourceException} is its first cause. A throwable already visited is
+ * never visited again, so chains with cycles are safe. For each kind of throwable of interest the first one found is kept.
+ */
+public class ThrowableAnalysis {
+    private final List<Throwable> chain = new ArrayList<>();
+
+    private InvalidValueException invalidValueException;
+
+    private DomainException domainException;
+
+    private Buffered source;
+
+    private Throwable transactionError;
+
+    private ThrowableAnalysis(Throwable throwable, boolean allCauses) {
+        final Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+        final Deque<Throwable> pending = new ArrayDeque<>();
+        pending.push(throwable);
+        while (!pending.isEmpty()) {
+            final Throwable current = pending.pop();
+            if (!visited.add(current)) {
+                continue;
+            }
+            chain.add(current);
+            classify(current);
+            if (allCauses && current instanceof SourceException) {
+                final Throwable[] causes = ((SourceException) current).getCauses();
+                for (int i = causes.length - 1; i >= 0; i--) {
+                    if (causes[i] != null) {
+                        pending.push(causes[i]);
+                    }
+                }
+            } else if (current.getCause() != null) {
+                pending.push(current.getCause());
+            }
+        }
+    }
+
+    private void classify(Throwable current) {
+        if (invalidValueException == null && current instanceof InvalidValueException) {
+            invalidValueException = (InvalidValueException) current;
+        }
+        if (domainException == null && current instanceof DomainException) {
+            domainException = (DomainException) current;
+        }
+        if (source == null && current instanceof SourceException) {
+            source = ((SourceException) current).getSource();
+        }
+        if (transactionError == null
+                && (current instanceof WriteOnReadError || current instanceof ConsistencyException
+                        || current instanceof TransactionError)) {
+            transactionError = current;
+        }
+    }
+
+    public static ThrowableAnalysis of(Throwable throwable) {
+        return new ThrowableAnalysis(throwable, true);
+    }
+
+    /**
+     * Analyses only the first cause of each {@link SourceException}, so a failure of a sibling buffered source does not hide
+     * the one that was raised first.
+     */
+    public static ThrowableAnalysis ofFirstCauses(Throwable throwable) {
+        return new ThrowableAnalysis(throwable, false);
+    }
+
+    /**
+     * @return every throwable of the chain in visiting order, starting with the analysed one.
+     */
+    public List<Throwable> getChain() {
+        return Collections.unmodifiableList(chain);
+    }
+
+    public InvalidValueException getInvalidValueException() {
+        return invalidValueException;
+    }
+
+    public DomainException getDomainException() {
+        return domainException;
+    }
+
+    /**
+     * @return the source of the first {@link SourceException} of the chain.
+     */
+    public Buffered getSource() {
+        return source;
+    }
+
+    /**
+     * @return the first {@link WriteOnReadError}, {@link ConsistencyException} or {@link TransactionError} of the chain, which
+     *         must reach the transaction layer untouched.
+     */
+    public Throwable getTransactionError() {
+        return transactionError;
+    }
+}
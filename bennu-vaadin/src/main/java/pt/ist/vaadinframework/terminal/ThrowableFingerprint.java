@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.terminal;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Identifies throwables that come from the same failure. The fingerprint is built from the type of the root cause and its
+ * top stack frames, messages are left out since they usually carry ids or user input.
+ */
+public class ThrowableFingerprint {
+    public static final int DEFAULT_FRAMES = 5;
+
+    private ThrowableFingerprint() {
+    }
+
+    public static String of(Throwable throwable) {
+        return of(throwable, DEFAULT_FRAMES);
+    }
+
+    /**
+     * @param frames
+     *            the number of top frames of the root cause that are taken into account.
+     * @return a hexadecimal fingerprint of the root cause of the throwable.
+     */
+    public static String of(Throwable throwable, int frames) {
+        final Throwable root = getRootCause(throwable);
+        long hash = hash(1125899906842597L, root.getClass().getName());
+        final StackTraceElement[] trace = root.getStackTrace();
+        for (int i = 0; i < Math.min(frames, trace.length); i++) {
+            hash = hash(hash, trace[i].getClassName());
+            hash = hash(hash, trace[i].getMethodName());
+            hash = 31 * hash + trace[i].getLineNumber();
+        }
+        return String.format("%016x", hash);
+    }
+
+    /**
+     * @return the last throwable of the cause chain, a chain with a cycle ends at the last throwable before the cycle.
+     */
+    public static Throwable getRootCause(Throwable throwable) {
+        final Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+        Throwable current = throwable;
+        while (current.getCause() != null && visited.add(current) && !visited.contains(current.getCause())) {
+            current = current.getCause();
+        }
+        return current;
+    }
+
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+        return hash;
+    }
+}
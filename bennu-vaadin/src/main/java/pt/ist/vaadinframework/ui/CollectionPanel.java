@@ -7,6 +7,7 @@ import com.vaadin.data.Container;
 import com.vaadin.ui.Alignment;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.Component;
+import com.vaadin.ui.ComponentContainer;
 import com.vaadin.ui.CustomComponent;
 import com.vaadin.ui.GridLayout;
 import com.vaadin.ui.Label;
@@ -41,6 +42,8 @@ public abstract class CollectionPanel extends CustomComponent implements Contain
 
     private Container itemContainer;
 
+    private VirtualizedItemTable virtualizedView;
+
     public CollectionPanel(boolean isRemovable) {
         this.isRemovable = isRemovable;
         bindUi();
@@ -128,7 +131,11 @@ public abstract class CollectionPanel extends CustomComponent implements Contain
 
             // Assigns new data source
             itemContainer = newDataSource;
-            refreshComponents(itemContainer);
+            if (isVirtualized()) {
+                virtualizedView.setContainerDataSource(itemContainer);
+            } else {
+                refreshComponents(itemContainer);
+            }
 
             // Adds listeners
             if (itemContainer != null) {
@@ -140,11 +147,58 @@ public abstract class CollectionPanel extends CustomComponent implements Contain
     }
 
     public void refreshComponents() {
-        refreshComponents(getContainerDataSource());
+        if (isVirtualized()) {
+            virtualizedView.refreshRowCache();
+        } else {
+            refreshComponents(getContainerDataSource());
+        }
     }
 
     protected abstract void refreshComponents(Container itemContainer);
 
+    /**
+     * Switches between rendering every element of the container (the default) and rendering only the elements in a viewport of
+     * the given number of rows plus a small buffer. In virtualized mode {@link #refreshComponents(Container)} is no longer
+     * called, the element components are created and reused, as the user scrolls, by the given renderer.
+     * 
+     * @param visibleRows
+     *            number of elements in the viewport, 0 to render every element.
+     * @param renderer
+     *            creates and binds the element components, required unless virtualization is being turned off or the panel
+     *            is already virtualized.
+     */
+    public void setVirtualized(int visibleRows, RecyclingColumnGenerator renderer) {
+        ComponentContainer content = itemLayoutContainer.getContent();
+        if (visibleRows > 0) {
+            if (virtualizedView == null || renderer != null) {
+                if (renderer == null) {
+                    throw new IllegalArgumentException("virtualized rendering requires a renderer");
+                }
+                if (virtualizedView != null) {
+                    content.removeComponent(virtualizedView);
+                }
+                virtualizedView = new VirtualizedItemTable(renderer, visibleRows);
+                content.removeAllComponents();
+                content.addComponent(virtualizedView);
+                if (itemContainer != null) {
+                    virtualizedView.setContainerDataSource(itemContainer);
+                }
+            } else {
+                virtualizedView.setPageLength(visibleRows);
+            }
+        } else if (virtualizedView != null) {
+            content.removeComponent(virtualizedView);
+            virtualizedView = null;
+            if (itemContainer != null) {
+                refreshComponents(itemContainer);
+            }
+        }
+    }
+
+    public boolean isVirtualized() {
+        return virtualizedView != null;
+    }
+
     @Override
     public Container getContainerDataSource() {
         return itemContainer;
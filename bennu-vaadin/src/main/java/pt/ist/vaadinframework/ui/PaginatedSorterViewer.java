@@ -27,9 +27,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import pt.ist.fenixframework.Atomic;
 import pt.ist.vaadinframework.VaadinResourceConstants;
 import pt.ist.vaadinframework.VaadinResources;
+import pt.ist.vaadinframework.data.RenderingTransaction;
+import pt.ist.vaadinframework.data.export.ContainerExport;
+import pt.ist.vaadinframework.data.export.ExportFormat;
+import pt.ist.vaadinframework.data.reflect.DomainContainer;
 
 import com.vaadin.data.Container;
 import com.vaadin.data.Container.Filterable;
@@ -357,8 +360,16 @@ public class PaginatedSorterViewer extends GridLayout implements Viewer, VaadinR
             refreshComponents(event.getContainer());
         }
 
-        @Atomic
-        private void refreshComponents(Container container) {
+        private void refreshComponents(final Container container) {
+            RenderingTransaction.renderAtomically("refresh:" + getClass().getName(), new Runnable() {
+                @Override
+                public void run() {
+                    renderComponents(container);
+                }
+            });
+        }
+
+        private void renderComponents(Container container) {
             removeAllComponents();
             if (groupPropertyId != null) {
                 Map<Object, Container> groups = new HashMap<Object, Container>();
@@ -615,15 +626,22 @@ public class PaginatedSorterViewer extends GridLayout implements Viewer, VaadinR
             shownContainer.removeListener(content);
             shownContainer.removeAllItems();
             if (realContainer.size() != 0) {
+                List<Object> pageItemIds = new ArrayList<Object>();
                 Object itemId = realContainer.getIdByIndex(index);
-                addShownItem(itemId);
+                pageItemIds.add(itemId);
                 int lastIndex = getPageLength() == 0 ? realContainer.size() : getPageLength();
                 for (int i = 1; i < lastIndex; i++) {
                     itemId = realContainer.nextItemId(itemId);
                     if (itemId == null) {
                         break;
                     }
-                    addShownItem(itemId);
+                    pageItemIds.add(itemId);
+                }
+                if (realContainer instanceof DomainContainer) {
+                    ((DomainContainer<?>) realContainer).prefetch(pageItemIds, realContainer.getContainerPropertyIds());
+                }
+                for (Object pageItemId : pageItemIds) {
+                    addShownItem(pageItemId);
                 }
             }
             if (listeners != null) {
@@ -721,6 +739,13 @@ public class PaginatedSorterViewer extends GridLayout implements Viewer, VaadinR
         }
     }
 
+    /**
+     * @return an export of all the pages, in their current order and filtering, with the container properties as columns.
+     */
+    public ContainerExport createExport(ExportFormat format) {
+        return new ContainerExport(realContainer, realContainer.getContainerPropertyIds().toArray(), null, format);
+    }
+
     public void filter(Object propertyId, String filterString) {
         if (realContainer != null) {
             if (realContainer instanceof Filterable) {
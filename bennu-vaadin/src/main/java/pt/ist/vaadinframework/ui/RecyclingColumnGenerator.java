@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ *
+ *      https://fenix-ashes.ist.utl.pt/
+ *
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package pt.ist.vaadinframework.ui;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Table;
+import com.vaadin.ui.Table.ColumnGenerator;
+
+/**
+ * {@link ColumnGenerator} that reuses the components it creates. A {@link Table} with a non zero page length only renders the
+ * rows in the viewport plus the cache buffer, and unregisters the cells that scroll out. Tables using this generator must hand
+ * those cells back with {@link #recycle(Component)} (see {@link VirtualizedItemTable}) so they are rebound to the rows that
+ * scroll in instead of building new component trees.
+ */
+public abstract class RecyclingColumnGenerator implements ColumnGenerator {
+    private final Set<Component> owned = new HashSet<Component>();
+
+    private final LinkedList<Component> pool = new LinkedList<Component>();
+
+    @Override
+    public Component generateCell(Table source, Object itemId, Object columnId) {
+        Component component = pool.poll();
+        if (component == null) {
+            component = createComponent();
+            owned.add(component);
+        }
+        bindComponent(component, source, itemId);
+        return component;
+    }
+
+    /**
+     * Returns a cell that is no longer rendered to the pool.
+     *
+     * @param component
+     *            the unregistered cell
+     * @return true if the component was created by this generator and will be reused.
+     */
+    public boolean recycle(Component component) {
+        if (owned.contains(component) && !pool.contains(component)) {
+            pool.add(component);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Offers an unregistered cell to each of the given generators, stopping at the one that owns it.
+     */
+    public static void recycle(List<RecyclingColumnGenerator> generators, Component component) {
+        for (RecyclingColumnGenerator generator : generators) {
+            if (generator.recycle(component)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of components created so far, live and pooled.
+     */
+    public int getComponentCount() {
+        return owned.size();
+    }
+
+    /**
+     * Creates a new unbound cell component, only called when the pool is empty.
+     */
+    protected abstract Component createComponent();
+
+    /**
+     * Binds a new or recycled cell component to the given row.
+     */
+    protected abstract void bindComponent(Component component, Table source, Object itemId);
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can 
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General 
+ *   Public License as published by the Free Software Foundation, either version 
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.ui;
+
+import java.util.Map;
+
+import pt.ist.vaadinframework.EmbeddedWindow;
+
+/**
+ * Opt-in extension of {@link EmbeddedComponentContainer} for pages that can describe their view state (scroll position,
+ * current page of a pager, filter text, ...) in a few strings. The {@link EmbeddedWindow} keeps that state in its history
+ * instead of the page itself, and hands it back when the user navigates back to the page.
+ */
+public interface RestorableComponentContainer extends EmbeddedComponentContainer {
+    /**
+     * Called when the user navigates away from this page.
+     * 
+     * @return the state needed to restore the current view, or null if there is nothing to restore.
+     */
+    public Map<String, String> getViewState();
+
+    /**
+     * Called on back navigation, after {@link #setArguments(Map)} and before the page is attached to the window.
+     * 
+     * @param state
+     *            the state previously returned by {@link #getViewState()}.
+     */
+    public void setViewState(Map<String, String> state);
+}
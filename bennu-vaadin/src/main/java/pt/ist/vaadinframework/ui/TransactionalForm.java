@@ -27,6 +27,8 @@ import pt.ist.fenixframework.Atomic;
 import pt.ist.vaadinframework.VaadinResourceConstants;
 import pt.ist.vaadinframework.VaadinResources;
 import pt.ist.vaadinframework.data.util.ServiceUtils;
+import pt.ist.vaadinframework.data.CommitCoordinator;
+import pt.ist.vaadinframework.instrumentation.CommitInstrumentation;
 
 import com.vaadin.data.Buffered;
 import com.vaadin.data.Item;
@@ -176,9 +178,27 @@ public class TransactionalForm extends Form implements VaadinResourceConstants {
         return newField;
     }
 
+    /**
+     * Validates the fields and the buffered data source, then runs {@link #commitInTransaction()} through the
+     * {@link CommitCoordinator}, accounted to this form.
+     */
     @Override
-    @Atomic
     public void commit() throws SourceException, InvalidValueException {
+        if (!CommitCoordinator.isCommitting()) {
+            if (!isInvalidCommitted() && !isValid()) {
+                validate();
+            }
+            CommitCoordinator.validate(getItemDataSource());
+        }
+        CommitCoordinator.run(CommitInstrumentation.FORM_SCOPE + getClass().getName(), new Runnable() {
+            @Override
+            public void run() {
+                commitInTransaction();
+            }
+        });
+    }
+
+    protected void commitInTransaction() throws SourceException, InvalidValueException {
         try {
             super.commit();
             if (getItemDataSource() instanceof Buffered) {
@@ -21,9 +21,17 @@
  */
 package pt.ist.vaadinframework.ui;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.ResourceBundle;
 
 import pt.ist.vaadinframework.data.AbstractBufferedContainer;
+import pt.ist.vaadinframework.data.RenderingTransaction;
+import pt.ist.vaadinframework.data.export.ContainerExport;
+import pt.ist.vaadinframework.data.export.ExportFormat;
+import pt.ist.vaadinframework.data.reflect.DomainContainer;
+import pt.ist.vaadinframework.data.reflect.PrefetchLoader;
 import pt.utl.ist.fenix.tools.util.i18n.Language;
 
 import com.vaadin.data.Container;
@@ -38,6 +46,10 @@ public class TransactionalTable extends Table {
 
     private transient ResourceBundle bundle;
 
+    private transient List<Object> prefetchedItemIds;
+
+    private transient List<Object> prefetchedColumns;
+
     private final PropertySetChangeListener headerUpdater = new PropertySetChangeListener() {
         @Override
         public void containerPropertySetChange(PropertySetChangeEvent event) {
@@ -79,6 +91,51 @@ public class TransactionalTable extends Table {
         refreshRenderedCells();
     }
 
+    /**
+     * Renders the cells in a single {@link RenderingTransaction}, prefetching the visible rows of {@link DomainContainer}s
+     * first when a {@link PrefetchLoader} is installed. Table refreshes its cells many times per request, the rows are only
+     * prefetched again when they change.
+     */
+    @Override
+    protected void refreshRenderedCells() {
+        RenderingTransaction.render("table:" + getClass().getName(), new Runnable() {
+            @Override
+            public void run() {
+                prefetchRenderedRows();
+                TransactionalTable.super.refreshRenderedCells();
+            }
+        });
+    }
+
+    private void prefetchRenderedRows() {
+        if (DomainContainer.getPrefetchLoader() == null || !(getContainerDataSource() instanceof DomainContainer) || size() == 0
+                || getVisibleColumns() == null) {
+            return;
+        }
+        DomainContainer<?> container = (DomainContainer<?>) getContainerDataSource();
+        int pageLength = getPageLength();
+        int first = 0;
+        int rows = size();
+        if (pageLength > 0) {
+            int cached = (int) (pageLength * getCacheRate());
+            first = Math.max(0, getCurrentPageFirstItemIndex() - cached);
+            rows = pageLength + 2 * cached;
+        }
+        List<Object> itemIds = new ArrayList<Object>(Math.min(rows, size()));
+        Object itemId = first < size() ? container.getIdByIndex(first) : null;
+        while (itemId != null && itemIds.size() < rows) {
+            itemIds.add(itemId);
+            itemId = container.nextItemId(itemId);
+        }
+        List<Object> columns = Arrays.asList(getVisibleColumns());
+        if (itemIds.equals(prefetchedItemIds) && columns.equals(prefetchedColumns)) {
+            return;
+        }
+        container.prefetch(itemIds, columns);
+        prefetchedItemIds = itemIds;
+        prefetchedColumns = columns;
+    }
+
     @Override
     public void setContainerDataSource(Container newDataSource) {
         if (getContainerDataSource() != null && getContainerDataSource() instanceof PropertySetChangeNotifier) {
@@ -95,6 +152,22 @@ public class TransactionalTable extends Table {
         super.setContainerDataSource(newDataSource);
     }
 
+    /**
+     * @return an export of the rows of this table, in their current order and filtering, with the visible columns and their
+     *         headers.
+     */
+    public ContainerExport createExport(ExportFormat format) {
+        if (!(getContainerDataSource() instanceof Container.Indexed)) {
+            throw new UnsupportedOperationException("Can only export containers that implement Container.Indexed");
+        }
+        Object[] columns = getVisibleColumns();
+        String[] headers = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            headers[i] = getColumnHeader(columns[i]);
+        }
+        return new ContainerExport((Container.Indexed) getContainerDataSource(), columns, headers, format);
+    }
+
     private void computeHeader(AbstractBufferedContainer<?, ?, ?> container, Object propertyId) {
         setColumnHeader(propertyId, CaptionUtils.makeCaption(getBundle(), container, propertyId, this));
     }
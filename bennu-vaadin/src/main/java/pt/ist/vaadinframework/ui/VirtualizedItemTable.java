@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ *
+ *      https://fenix-ashes.ist.utl.pt/
+ *
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package pt.ist.vaadinframework.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vaadin.data.Container;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Table;
+
+/**
+ * Single column, header-less {@link Table} that renders each element of a container with a {@link RecyclingColumnGenerator}.
+ * Only the rows in the viewport plus {@link #getCacheRate()} pages on each side are rendered, so the number of server side
+ * components stays constant whatever the size of the container.
+ */
+public class VirtualizedItemTable extends Table {
+    public static final String ITEM_COLUMN = "item";
+
+    public static final double DEFAULT_CACHE_RATE = 1;
+
+    private final List<RecyclingColumnGenerator> generators = new ArrayList<RecyclingColumnGenerator>();
+
+    public VirtualizedItemTable(RecyclingColumnGenerator renderer, int visibleRows) {
+        super();
+        setWidth(100, UNITS_PERCENTAGE);
+        setColumnHeaderMode(COLUMN_HEADER_MODE_HIDDEN);
+        setSelectable(false);
+        setPageLength(visibleRows);
+        setCacheRate(DEFAULT_CACHE_RATE);
+        addGeneratedColumn(ITEM_COLUMN, renderer);
+    }
+
+    @Override
+    public void addGeneratedColumn(Object id, ColumnGenerator generatedColumn) {
+        super.addGeneratedColumn(id, generatedColumn);
+        if (generatedColumn instanceof RecyclingColumnGenerator) {
+            generators.add((RecyclingColumnGenerator) generatedColumn);
+        }
+    }
+
+    @Override
+    public void setContainerDataSource(Container newDataSource) {
+        super.setContainerDataSource(newDataSource);
+        setVisibleColumns(new Object[] { ITEM_COLUMN });
+    }
+
+    @Override
+    protected void unregisterComponent(Component component) {
+        super.unregisterComponent(component);
+        RecyclingColumnGenerator.recycle(generators, component);
+    }
+}
@@ -22,13 +22,16 @@
 package pt.ist.vaadinframework.ui.fields;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
 
 import pt.ist.vaadinframework.VaadinResourceConstants;
 import pt.ist.vaadinframework.VaadinResources;
 import pt.ist.vaadinframework.data.AbstractBufferedContainer;
+import pt.ist.vaadinframework.ui.RecyclingColumnGenerator;
 import pt.ist.vaadinframework.ui.TransactionalTable;
+import pt.ist.vaadinframework.ui.VirtualizedItemTable;
 
 import com.vaadin.data.Container;
 import com.vaadin.data.Container.Indexed;
@@ -54,7 +57,16 @@ public class ContainerEditor<PC> extends FieldWrapper<PC> {
 
         private final Button down = new Button();
 
+        private Indexed container;
+
+        private Object itemId;
+
         public OrderChanger(final Indexed container, final Object itemId) {
+            this();
+            bind(container, itemId);
+        }
+
+        OrderChanger() {
             HorizontalLayout layout = new HorizontalLayout();
             layout.addComponent(up);
             up.setIcon(new ThemeResource("../runo/icons/32/arrow-up.png"));
@@ -63,12 +75,10 @@ public class ContainerEditor<PC> extends FieldWrapper<PC> {
                 @Override
                 public void buttonClick(ClickEvent event) {
                     int newIndex = container.indexOfId(itemId) - 1;
-                    container.removeItem(itemId);
-                    container.addItemAt(newIndex, itemId);
+                    move(newIndex);
                     up.setEnabled(newIndex > 0);
                 }
             });
-            up.setEnabled(container.indexOfId(itemId) > 0);
 
             layout.addComponent(down);
             down.setIcon(new ThemeResource("../runo/icons/32/arrow-down.png"));
@@ -77,43 +87,73 @@ public class ContainerEditor<PC> extends FieldWrapper<PC> {
                 @Override
                 public void buttonClick(ClickEvent event) {
                     int newIndex = container.indexOfId(itemId) + 1;
-                    container.removeItem(itemId);
-                    container.addItemAt(newIndex, itemId);
+                    move(newIndex);
                     down.setEnabled(newIndex < container.size() - 1);
                 }
             });
-            down.setEnabled(container.indexOfId(itemId) < container.size() - 1);
 
             setCompositionRoot(layout);
         }
+
+        private void move(int newIndex) {
+            if (container instanceof AbstractBufferedContainer) {
+                ((AbstractBufferedContainer<?, ?, ?>) container).moveItem(itemId, newIndex);
+            } else {
+                container.removeItem(itemId);
+                container.addItemAt(newIndex, itemId);
+            }
+        }
+
+        /**
+         * Points this changer at another item, used when the component is recycled for a different row.
+         */
+        public void bind(Indexed container, Object itemId) {
+            this.container = container;
+            this.itemId = itemId;
+            int index = container.indexOfId(itemId);
+            up.setEnabled(index > 0);
+            down.setEnabled(index < container.size() - 1);
+        }
     }
 
     public static class ContainerEditorTable extends TransactionalTable {
+        private final List<RecyclingColumnGenerator> generators = new ArrayList<RecyclingColumnGenerator>();
+
         public ContainerEditorTable(TableFieldFactory factory, String bundlename) {
             super(bundlename);
             setWidth(100, UNITS_PERCENTAGE);
             setPageLength(0);
             setTableFieldFactory(factory);
             setEditable(true);
-            addGeneratedColumn("index", new ColumnGenerator() {
+            addGeneratedColumn("index", new RecyclingColumnGenerator() {
+                @Override
+                protected Component createComponent() {
+                    return new OrderChanger();
+                }
+
                 @Override
-                public Component generateCell(Table source, Object itemId, Object columnId) {
-                    return new OrderChanger((Indexed) getContainerDataSource(), itemId);
+                protected void bindComponent(Component component, Table source, Object itemId) {
+                    ((OrderChanger) component).bind((Indexed) source.getContainerDataSource(), itemId);
                 }
             });
-            addGeneratedColumn(StringUtils.EMPTY, new ColumnGenerator() {
+            addGeneratedColumn(StringUtils.EMPTY, new RecyclingColumnGenerator() {
                 @Override
-                public Component generateCell(final Table source, final Object itemId, Object columnId) {
-                    Button delete = new Button(VaadinResources.getString(VaadinResourceConstants.COMMONS_ACTION_DELETE));
+                protected Component createComponent() {
+                    final Button delete = new Button(VaadinResources.getString(VaadinResourceConstants.COMMONS_ACTION_DELETE));
                     delete.addStyleName(BaseTheme.BUTTON_LINK);
                     delete.addListener(new ClickListener() {
                         @Override
                         public void buttonClick(ClickEvent event) {
-                            source.getContainerDataSource().removeItem(itemId);
+                            getContainerDataSource().removeItem(delete.getData());
                         }
                     });
                     return delete;
                 }
+
+                @Override
+                protected void bindComponent(Component component, Table source, Object itemId) {
+                    ((Button) component).setData(itemId);
+                }
             });
             // setVisible(size() > 0);
             addListener(new ItemSetChangeListener() {
@@ -129,6 +169,20 @@ public class ContainerEditor<PC> extends FieldWrapper<PC> {
             return getContainerDataSource().size() == 0;
         }
 
+        @Override
+        public void addGeneratedColumn(Object id, ColumnGenerator generatedColumn) {
+            super.addGeneratedColumn(id, generatedColumn);
+            if (generatedColumn instanceof RecyclingColumnGenerator) {
+                generators.add((RecyclingColumnGenerator) generatedColumn);
+            }
+        }
+
+        @Override
+        protected void unregisterComponent(Component component) {
+            super.unregisterComponent(component);
+            RecyclingColumnGenerator.recycle(generators, component);
+        }
+
         @Override
         public void setPropertyDataSource(Property newDataSource) {
             if (newDataSource instanceof Container) {
@@ -194,4 +248,18 @@ public class ContainerEditor<PC> extends FieldWrapper<PC> {
     public void addGeneratedColumn(Object id, ColumnGenerator generatedColumn) {
         getWrappedField().addGeneratedColumn(id, generatedColumn);
     }
+
+    /**
+     * Limits rendering to a viewport of the given number of rows plus the table cache buffer, instead of one row of editors
+     * per element. The order and delete cells are reused as rows scroll in and out.
+     * 
+     * @param visibleRows
+     *            number of rows in the viewport, 0 to render every element.
+     */
+    public void setVirtualized(int visibleRows) {
+        getWrappedField().setPageLength(visibleRows);
+        if (visibleRows > 0) {
+            getWrappedField().setCacheRate(VirtualizedItemTable.DEFAULT_CACHE_RATE);
+        }
+    }
 }
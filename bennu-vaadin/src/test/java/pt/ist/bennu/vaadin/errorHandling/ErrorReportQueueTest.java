@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.bennu.vaadin.errorHandling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ErrorReportQueueTest {
+    private static final long TIMEOUT = 5000;
+
+    private File spool;
+
+    private ErrorReportQueue queue;
+
+    private ErrorReportQueue restarted;
+
+    @Before
+    public void createSpool() throws IOException {
+        spool = Files.createTempDirectory("error-reports").toFile();
+    }
+
+    @After
+    public void deleteSpool() {
+        if (queue != null) {
+            queue.shutdown();
+        }
+        if (restarted != null) {
+            restarted.shutdown();
+        }
+        for (File file : spool.listFiles()) {
+            file.delete();
+        }
+        spool.delete();
+    }
+
+    private static ErrorReport report(Throwable error) {
+        return new ErrorReport(error, "comment", "tester", "support@example.com");
+    }
+
+    private int spooled() {
+        return spool.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(".report");
+            }
+        }).length;
+    }
+
+    private boolean awaitSpooled(int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (spooled() != count) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    @Test
+    public void deliversAndRemovesSpooledReport() throws Exception {
+        FakeErrorReportTransport transport = new FakeErrorReportTransport();
+        queue = new ErrorReportQueue(transport, spool);
+        assertTrue(queue.submit(report(new IllegalStateException("delivered"))));
+        assertTrue(transport.await(1, TIMEOUT));
+        assertTrue(transport.getReports().get(0).getBody().contains("comment"));
+        assertTrue(awaitSpooled(0));
+        assertEquals(1, queue.getSentCount());
+    }
+
+    @Test
+    public void queuedReportSurvivesRestart() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        queue = new ErrorReportQueue(new ErrorReportTransport() {
+            @Override
+            public void send(ErrorReport report) throws Exception {
+                release.await();
+                throw new IllegalStateException("stopped");
+            }
+        }, spool, ErrorReportQueue.DEFAULT_CAPACITY, ErrorReportQueue.DEFAULT_RATE_LIMIT,
+                ErrorReportQueue.DEFAULT_RATE_INTERVAL, 0);
+        try {
+            queue.submit(report(new IllegalStateException("blocking")));
+            queue.submit(report(new IllegalArgumentException("queued")));
+            assertTrue(awaitSpooled(2));
+
+            FakeErrorReportTransport transport = new FakeErrorReportTransport();
+            restarted = new ErrorReportQueue(transport, spool);
+            assertTrue(transport.await(2, TIMEOUT));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void retriesFailedReports() throws Exception {
+        FakeErrorReportTransport transport = new FakeErrorReportTransport();
+        transport.setFailing(true);
+        queue =
+                new ErrorReportQueue(transport, spool, ErrorReportQueue.DEFAULT_CAPACITY, ErrorReportQueue.DEFAULT_RATE_LIMIT,
+                        ErrorReportQueue.DEFAULT_RATE_INTERVAL, 50);
+        queue.submit(report(new IllegalStateException("failing")));
+        final long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (queue.getFailedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, spooled());
+
+        transport.setFailing(false);
+        assertTrue(transport.await(1, TIMEOUT));
+        assertTrue(awaitSpooled(0));
+    }
+}
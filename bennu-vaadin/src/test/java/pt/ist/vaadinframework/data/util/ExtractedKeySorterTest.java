@@ -0,0 +1,182 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.data.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ExtractedKeySorterTest {
+    private static final String[] WORDS = { "alpha", "Beta", "gamma", "\u00c1lvaro", "delta", "Echo", "\u00e1baco", "zeta" };
+
+    /**
+     * The ordering of {@link com.vaadin.data.util.DefaultItemSorter}: nulls first, natural order otherwise, descending columns
+     * reversing the whole comparison. {@link Collections#sort(List, Comparator)} is stable, so equal keys keep their input
+     * order.
+     */
+    private static class ReferenceComparator implements Comparator<Integer> {
+        private final Object[][] values;
+
+        private final boolean[] ascending;
+
+        private final Collator collator;
+
+        public ReferenceComparator(Object[][] values, boolean[] ascending, Collator collator) {
+            this.values = values;
+            this.ascending = ascending;
+            this.collator = collator;
+        }
+
+        @Override
+        public int compare(Integer i, Integer j) {
+            for (int column = 0; column < values.length; column++) {
+                int result = compareValues(values[column][i], values[column][j]);
+                if (result != 0) {
+                    return ascending[column] ? result : -result;
+                }
+            }
+            return 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private int compareValues(Object first, Object second) {
+            if (first == null) {
+                return second == null ? 0 : -1;
+            }
+            if (second == null) {
+                return 1;
+            }
+            if (collator != null && first instanceof String) {
+                return collator.compare(first, second);
+            }
+            return ((Comparable<Object>) first).compareTo(second);
+        }
+    }
+
+    private static int[] expectedOrder(Object[][] values, boolean[] ascending, Collator collator) {
+        int size = values.length > 0 ? values[0].length : 0;
+        List<Integer> order = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            order.add(i);
+        }
+        Collections.sort(order, new ReferenceComparator(values, ascending, collator));
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = order.get(i);
+        }
+        return result;
+    }
+
+    private static Object randomValue(Random random, int type, int distinct) {
+        if (random.nextInt(8) == 0) {
+            return null;
+        }
+        int value = random.nextInt(distinct);
+        switch (type) {
+        case 0:
+            return value;
+        case 1:
+            return (long) value - distinct / 2;
+        case 2:
+            return value / 4.0;
+        case 3:
+            return new Date(value * 1000L);
+        default:
+            return WORDS[value % WORDS.length];
+        }
+    }
+
+    private static Object[][] randomColumns(Random random, int[] types, int size, int distinct) {
+        Object[][] values = new Object[types.length][size];
+        for (int column = 0; column < types.length; column++) {
+            for (int i = 0; i < size; i++) {
+                values[column][i] = randomValue(random, types[column], distinct);
+            }
+        }
+        return values;
+    }
+
+    private static void assertSortsLikeReference(Object[][] values, boolean[] ascending, Collator collator) {
+        int[] expected = expectedOrder(values, ascending, collator);
+        int[] actual = new ExtractedKeySorter(values, ascending, collator).sort();
+        assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+    }
+
+    @Test
+    public void keepsInputOrderOfEqualKeys() {
+        Object[][] values = { { 2, null, 1, 2, null, 1 } };
+        int[] order = new ExtractedKeySorter(values, new boolean[] { true }, null).sort();
+        assertEquals("[1, 4, 2, 5, 0, 3]", Arrays.toString(order));
+        order = new ExtractedKeySorter(values, new boolean[] { false }, null).sort();
+        assertEquals("[0, 3, 2, 5, 1, 4]", Arrays.toString(order));
+    }
+
+    @Test
+    public void sortsSingleColumnsLikeReference() {
+        Random random = new Random(42);
+        Collator collator = Collator.getInstance(new Locale("pt", "PT"));
+        for (int type = 0; type < 5; type++) {
+            for (int round = 0; round < 50; round++) {
+                Object[][] values = randomColumns(random, new int[] { type }, random.nextInt(200), 1 + random.nextInt(40));
+                boolean[] ascending = { random.nextBoolean() };
+                assertSortsLikeReference(values, ascending, null);
+                assertSortsLikeReference(values, ascending, collator);
+            }
+        }
+    }
+
+    @Test
+    public void sortsMultipleColumnsLikeReference() {
+        Random random = new Random(7);
+        Collator collator = Collator.getInstance(new Locale("pt", "PT"));
+        for (int round = 0; round < 200; round++) {
+            int[] types = new int[1 + random.nextInt(3)];
+            boolean[] ascending = new boolean[types.length];
+            for (int column = 0; column < types.length; column++) {
+                types[column] = random.nextInt(5);
+                ascending[column] = random.nextBoolean();
+            }
+            Object[][] values = randomColumns(random, types, random.nextInt(300), 1 + random.nextInt(6));
+            assertSortsLikeReference(values, ascending, round % 2 == 0 ? collator : null);
+        }
+    }
+
+    @Test
+    public void sortsLargeInputsLikeReference() {
+        Random random = new Random(11);
+        Collator collator = Collator.getInstance(new Locale("pt", "PT"));
+        int size = ExtractedKeySorter.PARALLEL_THRESHOLD * 3 + 17;
+        Object[][] values = randomColumns(random, new int[] { 4, 0, 2 }, size, 50);
+        assertSortsLikeReference(values, new boolean[] { true, false, true }, collator);
+        assertSortsLikeReference(values, new boolean[] { false, true, false }, null);
+    }
+}
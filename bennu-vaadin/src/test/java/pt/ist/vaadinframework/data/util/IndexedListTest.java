@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.data.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IndexedListTest {
+    private static final int VALUES = 30;
+
+    private static Integer randomValue(Random random) {
+        return random.nextInt(10) == 0 ? null : random.nextInt(VALUES);
+    }
+
+    private static void assertSameLookups(List<Integer> expected, IndexedList<Integer> actual) {
+        assertEquals(expected, actual);
+        assertEquals(expected.indexOf(null), actual.indexOf(null));
+        for (int value = 0; value < VALUES; value++) {
+            assertEquals(expected.indexOf(value), actual.indexOf(value));
+            assertEquals(expected.contains(value), actual.contains(value));
+        }
+    }
+
+    @Test
+    public void reportsFirstOccurrenceOfDuplicates() {
+        IndexedList<String> list = new IndexedList<String>(Arrays.asList("a", "b", "a", "c"));
+        assertEquals(0, list.indexOf("a"));
+        list.remove(0);
+        assertEquals(1, list.indexOf("a"));
+        list.add(0, "a");
+        assertEquals(0, list.indexOf("a"));
+        assertEquals(-1, list.indexOf("d"));
+    }
+
+    @Test
+    public void forgetsRemovedElements() {
+        IndexedList<String> list = new IndexedList<String>(Arrays.asList("a", "b", "c"));
+        assertEquals(1, list.indexOf("b"));
+        list.remove(1);
+        assertEquals(-1, list.indexOf("b"));
+        list.add("d");
+        assertEquals(-1, list.indexOf("b"));
+        list.add("b");
+        assertEquals(3, list.indexOf("b"));
+    }
+
+    @Test
+    public void behavesLikeArrayList() {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            List<Integer> expected = new ArrayList<Integer>();
+            IndexedList<Integer> actual = new IndexedList<Integer>();
+            for (int operation = 0; operation < 200; operation++) {
+                int size = expected.size();
+                Integer value = randomValue(random);
+                switch (random.nextInt(8)) {
+                case 0:
+                    expected.add(value);
+                    actual.add(value);
+                    break;
+                case 1: {
+                    int index = random.nextInt(size + 1);
+                    expected.add(index, value);
+                    actual.add(index, value);
+                    break;
+                }
+                case 2:
+                    if (size > 0) {
+                        int index = random.nextInt(size);
+                        assertEquals(expected.set(index, value), actual.set(index, value));
+                    }
+                    break;
+                case 3:
+                    if (size > 0) {
+                        int index = random.nextInt(size);
+                        assertEquals(expected.remove(index), actual.remove(index));
+                    }
+                    break;
+                case 4:
+                    if (size > 0) {
+                        assertEquals(expected.remove(size - 1), actual.remove(size - 1));
+                    }
+                    break;
+                case 5:
+                    assertEquals(expected.remove(value), actual.remove(value));
+                    break;
+                case 6:
+                    if (random.nextInt(20) == 0) {
+                        expected.clear();
+                        actual.clear();
+                    }
+                    break;
+                default:
+                    Integer lookedUp = randomValue(random);
+                    assertEquals(expected.indexOf(lookedUp), actual.indexOf(lookedUp));
+                }
+            }
+            assertSameLookups(expected, actual);
+        }
+    }
+}
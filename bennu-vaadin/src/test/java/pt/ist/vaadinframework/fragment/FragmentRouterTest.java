@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.fragment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import pt.ist.vaadinframework.annotation.EmbeddedRoute;
+import pt.ist.vaadinframework.fragment.FragmentRouter.Match;
+
+public class FragmentRouterTest {
+    private static PageHandle page(String path) {
+        return new PageHandle(new EmbeddedRoute(path, "pages." + path.replaceAll("\\W", "_"), new String[0], false), null);
+    }
+
+    private static FragmentRouter router(String... paths) {
+        FragmentRouter router = new FragmentRouter();
+        for (String path : paths) {
+            router.addRoute(path, page(path));
+        }
+        return router;
+    }
+
+    @Test
+    public void matchesStaticRoutes() {
+        Match match = router("a/b", "a/{x}").match("a/b");
+        assertEquals("a/b", match.getRoute());
+        assertTrue(match.getPathParameters().isEmpty());
+    }
+
+    @Test
+    public void bindsParameters() {
+        Match match = router("person/{id}/edit").match("person/42/edit");
+        assertEquals("person/{id}/edit", match.getRoute());
+        assertEquals("42", match.getPathParameters().get("id"));
+    }
+
+    @Test
+    public void prefersLiteralSegments() {
+        Match match = router("a/{x}/d", "a/c/d").match("a/c/d");
+        assertEquals("a/c/d", match.getRoute());
+        assertTrue(match.getPathParameters().isEmpty());
+    }
+
+    @Test
+    public void backtracksToParameterWhenLiteralBranchFails() {
+        Match match = router("a/{x}/b", "a/c/d").match("a/c/b");
+        assertEquals("a/{x}/b", match.getRoute());
+        assertEquals("c", match.getPathParameters().get("x"));
+    }
+
+    @Test
+    public void backtracksWhenLiteralNodeHasNoPage() {
+        Match match = router("a/{x}", "a/c/d").match("a/c");
+        assertEquals("a/{x}", match.getRoute());
+        assertEquals("c", match.getPathParameters().get("x"));
+    }
+
+    @Test
+    public void unbindsParametersOfFailedBranches() {
+        Match match = router("a/{x}/b/c", "a/{x}/{y}/d", "e/{z}").match("a/1/b/d");
+        assertEquals("a/{x}/{y}/d", match.getRoute());
+        assertEquals("1", match.getPathParameters().get("x"));
+        assertEquals("b", match.getPathParameters().get("y"));
+        assertEquals(2, match.getPathParameters().size());
+    }
+
+    @Test
+    public void returnsNullWithoutMatch() {
+        FragmentRouter router = router("a/{x}/b", "a/c/d");
+        assertNull(router.match("a/c"));
+        assertNull(router.match("a//b"));
+        assertNull(router.match("z"));
+        assertNull(router.match(null));
+    }
+
+    @Test(expected = InvalidFragmentException.class)
+    public void rejectsConflictingParameterNames() {
+        router("a/{x}/b", "a/{y}/c");
+    }
+}
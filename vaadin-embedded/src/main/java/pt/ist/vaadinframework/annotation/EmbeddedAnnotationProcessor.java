@@ -21,11 +21,17 @@
  */
 package pt.ist.vaadinframework.annotation;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.RoundEnvironment;
@@ -34,6 +40,8 @@ import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
 
 import org.apache.commons.io.FileUtils;
 
@@ -44,8 +52,20 @@ public class EmbeddedAnnotationProcessor extends AbstractProcessor {
     public static final String LOG_FILENAME = ".embeddedAnnotationLog";
     public static final String ENTRY_SEPERATOR = "\n";
 
+    private final Map<String, EmbeddedRoute> routes = new TreeMap<String, EmbeddedRoute>();
+
+    private boolean routesLoaded = false;
+
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeRouteIndex();
+            return true;
+        }
+        if (!routesLoaded) {
+            loadRouteIndex();
+            routesLoaded = true;
+        }
 
         final Set<String> actions = new HashSet<String>();
 
@@ -65,7 +85,9 @@ public class EmbeddedAnnotationProcessor extends AbstractProcessor {
         for (final Element element : elements) {
             if (element instanceof TypeElement) {
                 final TypeElement typeElement = (TypeElement) element;
-                actions.add(typeElement.getQualifiedName().toString());
+                final String className = typeElement.getQualifiedName().toString();
+                actions.add(className);
+                addRoutes(className, typeElement.getAnnotation(EmbeddedComponent.class));
             } else {
                 System.out.println("Skipping processing of element: " + element.getClass().getName()
                         + ", this type was not expected!");
@@ -94,4 +116,63 @@ public class EmbeddedAnnotationProcessor extends AbstractProcessor {
         return true;
     }
 
+    private void addRoutes(String className, EmbeddedComponent annotation) {
+        for (Iterator<EmbeddedRoute> iterator = routes.values().iterator(); iterator.hasNext();) {
+            if (iterator.next().getClassName().equals(className)) {
+                iterator.remove();
+            }
+        }
+        for (final String path : annotation.path()) {
+            routes.put(path, new EmbeddedRoute(path, className, annotation.args(), annotation.persistent()));
+        }
+    }
+
+    /**
+     * Incremental builds only process the changed classes, so keep the entries of a previous index whose classes are still
+     * annotated with {@link EmbeddedComponent} and still declare the entry's path.
+     */
+    private void loadRouteIndex() {
+        try {
+            final FileObject index =
+                    processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", EmbeddedRoute.INDEX_RESOURCE);
+            try (BufferedReader reader = new BufferedReader(index.openReader(true))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final EmbeddedRoute route = EmbeddedRoute.parse(line);
+                    if (route != null) {
+                        final EmbeddedComponent annotation = getCurrentAnnotation(route.getClassName());
+                        if (annotation != null && Arrays.asList(annotation.path()).contains(route.getPath())) {
+                            routes.put(route.getPath(), new EmbeddedRoute(route.getPath(), route.getClassName(),
+                                    annotation.args(), annotation.persistent()));
+                        }
+                    }
+                }
+            }
+        } catch (final IOException | IllegalArgumentException e) {
+            // no previous index
+        }
+    }
+
+    private EmbeddedComponent getCurrentAnnotation(String className) {
+        final TypeElement element = processingEnv.getElementUtils().getTypeElement(className);
+        return element != null ? element.getAnnotation(EmbeddedComponent.class) : null;
+    }
+
+    private void writeRouteIndex() {
+        if (routes.isEmpty()) {
+            return;
+        }
+        try {
+            final FileObject index =
+                    processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", EmbeddedRoute.INDEX_RESOURCE);
+            try (Writer writer = index.openWriter()) {
+                for (final EmbeddedRoute route : routes.values()) {
+                    writer.write(route.toLine());
+                    writer.write(ENTRY_SEPERATOR);
+                }
+            }
+        } catch (final IOException e) {
+            e.printStackTrace();
+        }
+    }
 }
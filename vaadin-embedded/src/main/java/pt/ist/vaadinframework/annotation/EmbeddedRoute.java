@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012 Instituto Superior Tecnico
+ * 
+ *      https://fenix-ashes.ist.utl.pt/
+ * 
+ *   This file is part of the vaadin-framework.
+ *
+ *   The vaadin-framework Infrastructure is free software: you can
+ *   redistribute it and/or modify it under the terms of the GNU Lesser General
+ *   Public License as published by the Free Software Foundation, either version
+ *   3 of the License, or (at your option) any later version.*
+ *
+ *   vaadin-framework is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *   GNU Lesser General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Lesser General Public License
+ *   along with vaadin-framework. If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package pt.ist.vaadinframework.annotation;
+
+import java.util.Arrays;
+
+/**
+ * One entry of the route index written by {@link EmbeddedAnnotationProcessor}: a path of an {@link EmbeddedComponent} along
+ * with its arguments, persistence flag and the name of the annotated class. The index lets the runtime register every page
+ * without loading its class.
+ */
+public class EmbeddedRoute {
+    public static final String INDEX_RESOURCE = "META-INF/embeddedRoutes";
+
+    private static final String FIELD_SEPARATOR = "\t";
+
+    private static final String ARGS_SEPARATOR = ",";
+
+    private final String path;
+
+    private final String className;
+
+    private final String[] args;
+
+    private final boolean persistent;
+
+    public EmbeddedRoute(String path, String className, String[] args, boolean persistent) {
+        this.path = path;
+        this.className = className;
+        this.args = args;
+        this.persistent = persistent;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String[] getArgs() {
+        return args;
+    }
+
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    public String toLine() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(path).append(FIELD_SEPARATOR).append(className).append(FIELD_SEPARATOR).append(persistent);
+        builder.append(FIELD_SEPARATOR);
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                builder.append(ARGS_SEPARATOR);
+            }
+            builder.append(args[i]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the route described by the line, or null if the line is empty.
+     * @throws IllegalArgumentException
+     *             if the line is not in the index format.
+     */
+    public static EmbeddedRoute parse(String line) {
+        if (line.trim().isEmpty()) {
+            return null;
+        }
+        final String[] fields = line.split(FIELD_SEPARATOR, -1);
+        if (fields.length != 4) {
+            throw new IllegalArgumentException("Malformed route: " + line);
+        }
+        final String[] args = fields[3].isEmpty() ? new String[0] : fields[3].split(ARGS_SEPARATOR);
+        return new EmbeddedRoute(fields[0], fields[1], args, Boolean.parseBoolean(fields[2]));
+    }
+
+    @Override
+    public String toString() {
+        return path + " -> " + className + (persistent ? " (persistent)" : "") + " " + Arrays.toString(args);
+    }
+}